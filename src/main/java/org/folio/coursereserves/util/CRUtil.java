@@ -3,21 +3,19 @@ package org.folio.coursereserves.util;
 import io.vertx.core.CompositeFuture;
 import io.vertx.core.Context;
 import io.vertx.core.Future;
-import io.vertx.core.MultiMap;
-import io.vertx.core.Vertx;
-import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.HttpMethod;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
-import io.vertx.ext.web.client.HttpRequest;
-import io.vertx.ext.web.client.HttpResponse;
-import io.vertx.ext.web.client.WebClient;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Predicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -25,6 +23,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.folio.coursereserves.util.PopulateMapping.ImportType;
 import static org.folio.rest.impl.CourseAPI.COPYRIGHT_STATUSES_TABLE;
+import static org.folio.rest.impl.CourseAPI.COURSES_TABLE;
 import static org.folio.rest.impl.CourseAPI.COURSE_LISTINGS_TABLE;
 import static org.folio.rest.impl.CourseAPI.COURSE_TYPES_TABLE;
 import static org.folio.rest.impl.CourseAPI.DEPARTMENTS_TABLE;
@@ -33,8 +32,12 @@ import static org.folio.rest.impl.CourseAPI.PROCESSING_STATUSES_TABLE;
 import static org.folio.rest.impl.CourseAPI.RESERVES_TABLE;
 import static org.folio.rest.impl.CourseAPI.TERMS_TABLE;
 
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowSet;
+import io.vertx.sqlclient.Tuple;
+import org.folio.dbschema.ObjectMapperTool;
 import org.folio.okapi.common.GenericCompositeFuture;
-import org.folio.okapi.common.WebClientFactory;
+import org.folio.rest.jaxrs.model.CacheStatistic;
 import org.folio.rest.jaxrs.model.Contributor;
 import org.folio.rest.jaxrs.model.CopiedItem;
 import org.folio.rest.jaxrs.model.CopyrightStatusObject;
@@ -66,6 +69,7 @@ import org.folio.rest.persist.Criteria.Criterion;
 import org.folio.util.StringUtil;
 import org.folio.rest.persist.PgUtil;
 import org.folio.rest.persist.PostgresClient;
+import org.folio.rest.tools.utils.TenantTool;
 
 
 public class CRUtil {
@@ -78,11 +82,58 @@ public class CRUtil {
   public static final String ITEMS_ENDPOINT = "/item-storage/items";
   public static final String HOLDINGS_ENDPOINT = "/holdings-storage/holdings";
   public static final String INSTANCES_ENDPOINT = "/instance-storage/instances";
+  public static final String INVENTORY_VIEW_ENDPOINT = "/inventory-view/instances";
   public static final String OKAPI_URL_HEADER = "x-okapi-url";
   public static final String OKAPI_TOKEN_HEADER = "x-okapi-token";
   public static final String OKAPI_TENANT_HEADER = "x-okapi-tenant";
+  public static final int ID_BATCH_SIZE = 50;
+  public static final String CACHE_CONTROL_HEADER = "cache-control";
+
+  public static final boolean USE_INVENTORY_VIEW =
+      Util.getLongConfig("courses.inventory.view", 1) != 0;
+  protected static final TtlCache<String, Boolean> INVENTORY_VIEW_UNAVAILABLE =
+      new TtlCache<>(1000, 10 * 60 * 1000L);
+
+  /*
+    Locations, loan types and service points rarely change, so they are kept for a
+    while after being fetched. Keys are prefixed with the tenant, see inventoryCacheKey.
+  */
+  public static final TtlCache<String, JsonObject> INVENTORY_CACHE = new TtlCache<>(
+      (int) Util.getLongConfig("courses.inventory.cache.size", 1000),
+      Util.getLongConfig("courses.inventory.cache.ttl", 300) * 1000);
+
+  public static final ReferenceDataCache REFERENCE_DATA_CACHE = new ReferenceDataCache(
+      (int) Util.getLongConfig("courses.reference.cache.size", 10000),
+      Util.getLongConfig("courses.reference.cache.ttl", 600) * 1000);
+
+  /*
+    Course listing, department, term and course type of many courses in one query,
+    joined on the foreign key columns that RMB maintains for them
+  */
+  private static final String EXPANDED_COURSES_SQL =
+      "SELECT c.id, cl.jsonb AS courselisting, d.jsonb AS department,"
+      + " t.jsonb AS term, ct.jsonb AS coursetype"
+      + " FROM %1$s.%2$s c"
+      + " LEFT JOIN %1$s.%3$s cl ON cl.id = c.courselistingid"
+      + " LEFT JOIN %1$s.%4$s d ON d.id = c.departmentid"
+      + " LEFT JOIN %1$s.%5$s t ON t.id = cl.termid"
+      + " LEFT JOIN %1$s.%6$s ct ON ct.id = cl.coursetypeid"
+      + " WHERE c.id = ANY($1)";
 
   protected static final List<PopulateMapping> LOCATION_MAP_LIST = getLocationMapList();
+  protected static final List<PopulateMapping> SERVICEPOINT_MAP_LIST = getServicepointMapList();
+
+  /*
+    The inventory location is embedded as two POJO classes that RMB generates
+    from the same schema, so both mappers share LOCATION_MAP_LIST
+  */
+  private static final PojoMapper<LocationObject> LOCATION_MAPPER =
+      PojoMapper.of(LocationObject.class, LocationObject::new, LOCATION_MAP_LIST);
+  private static final PojoMapper<TemporaryLocationObject> TEMPORARY_LOCATION_MAPPER =
+      PojoMapper.of(TemporaryLocationObject.class, TemporaryLocationObject::new,
+          LOCATION_MAP_LIST);
+  private static final PojoMapper<ServicepointObject> SERVICEPOINT_MAPPER =
+      PojoMapper.of(ServicepointObject.class, ServicepointObject::new, SERVICEPOINT_MAP_LIST);
 
   protected static final Map<String, String> textAcceptHeaders = getTextAcceptHeaders();
 
@@ -108,13 +159,30 @@ public class CRUtil {
     return mapList;
   }
 
+  public static List<PopulateMapping> getServicepointMapList() {
+    List<PopulateMapping> mapList = new ArrayList<>();
+    mapList.add(new PopulateMapping("id"));
+    mapList.add(new PopulateMapping("name"));
+    mapList.add(new PopulateMapping("code"));
+    mapList.add(new PopulateMapping("discoveryDisplayName"));
+    mapList.add(new PopulateMapping("description"));
+    mapList.add(new PopulateMapping("shelvingLagTime", ImportType.INTEGER));
+    mapList.add(new PopulateMapping("pickupLocation", ImportType.BOOLEAN));
+    return mapList;
+  }
+
   public static Map<String, String> getTextAcceptHeaders() {
     Map<String, String> acceptMap = new HashMap<>();
     acceptMap.put("Accept", "text/plain");
     return acceptMap;
   }
 
-  private static Future<String> getItemId(Reserve reserve, Map<String, String> okapiHeaders, Context context) {
+  /*
+    Look up item, holdings and instance for the item id or barcode given in the reserve.
+    A barcode takes precedence over an item id.
+  */
+  private static Future<JsonObject> lookupInventoryForReserve(Reserve reserve,
+      OkapiClient okapiClient) {
     String barcode;
     if (reserve.getCopiedItem() != null) {
       barcode = reserve.getCopiedItem().getBarcode();
@@ -123,45 +191,285 @@ public class CRUtil {
     }
     String itemId = reserve.getItemId();
     if (itemId != null && barcode == null) {
-      return Future.succeededFuture(itemId);
+      return lookupItemHoldingsInstanceByItemId(itemId, okapiClient);
     } else if (barcode != null) {
-      return lookupItemByBarcode(barcode, okapiHeaders, context).map(barcodeItemLookupRes -> {
-        if (barcodeItemLookupRes == null) {
-          throw new RuntimeException("No item found for barcode " + barcode);
-        }
-        return barcodeItemLookupRes.getString("id");
-      });
+      return lookupItemHoldingsInstanceByBarcode(barcode, okapiClient);
     } else {
       return Future.failedFuture("Must provide item id or item barcode to populate copied items");
     }
   }
 
   public static Future<JsonObject> populateReserveInventoryCache(Reserve reserve,
-      Map<String, String> okapiHeaders, Context context) {
-    return getItemId(reserve, okapiHeaders, context)
-        .compose(retrievedItemId -> {
+      OkapiClient okapiClient) {
+    return lookupInventoryForReserve(reserve, okapiClient)
+        .map(inventoryRes -> {
+          String retrievedItemId = inventoryRes.getJsonObject("item").getString("id");
           reserve.setItemId(retrievedItemId);
-          logger.info("Looking up information for item {} from inventory module",
+          logger.info("Attempting to populate copied items with inventory lookup for item id {}",
               retrievedItemId);
-          return lookupItemHoldingsInstanceByItemId(retrievedItemId, okapiHeaders, context)
-              .map(inventoryRes -> {
-                logger.info("Attempting to populate copied items with inventory lookup for item id {}",
-                    retrievedItemId);
-                populateReserveCopiedItemFromJson(reserve, inventoryRes);
-                return inventoryRes;
-              });
+          populateReserveCopiedItemFromJson(reserve, inventoryRes);
+          return inventoryRes;
         });
   }
 
+
+  /*
+    Expand a page of reserves that has already been read from storage. The distinct
+    location, loan type and status ids of the whole page are collected first and then
+    looked up with a few batched queries instead of several requests per reserve.
+  */
   public static Future<List<Reserve>> expandListOfReserves(List<Reserve> listOfReserves,
-      Map<String, String> okapiHeaders, Context context) {
-    List<Future<Reserve>> expandedReserveFutureList = new ArrayList<>();
+      Map<String, String> okapiHeaders, Context context, OkapiClient okapiClient) {
+    Set<String> locationIds = new LinkedHashSet<>();
+    Set<String> loanTypeIds = new LinkedHashSet<>();
+    Set<String> processingStatusIds = new LinkedHashSet<>();
+    Set<String> copyrightStatusIds = new LinkedHashSet<>();
     for (Reserve reserve : listOfReserves) {
-      expandedReserveFutureList.add(lookupExpandedReserve(reserve.getId(), okapiHeaders, context));
+      if (reserve.getCopiedItem() == null) {
+        continue;
+      }
+      addIfNotNull(locationIds, reserve.getCopiedItem().getTemporaryLocationId());
+      addIfNotNull(locationIds, reserve.getCopiedItem().getPermanentLocationId());
+      addIfNotNull(loanTypeIds, reserve.getTemporaryLoanTypeId());
+      addIfNotNull(processingStatusIds, reserve.getProcessingStatusId());
+      if (reserve.getCopyrightTracking() != null) {
+        addIfNotNull(copyrightStatusIds, reserve.getCopyrightTracking().getCopyrightStatusId());
+      }
+    }
+    Future<Map<String, JsonObject>> locationsFuture = lookupInventoryRecordsByIds(
+        LOCATIONS_ENDPOINT, "locations", locationIds, okapiHeaders, okapiClient);
+    Future<Map<String, JsonObject>> loanTypesFuture = lookupInventoryRecordsByIds(
+        LOAN_TYPES_ENDPOINT, "loantypes", loanTypeIds, okapiHeaders, okapiClient);
+    Future<Map<String, ProcessingStatus>> processingStatusesFuture = lookupRecordsByIds(
+        PROCESSING_STATUSES_TABLE, processingStatusIds, ProcessingStatus.class, okapiHeaders, context);
+    Future<Map<String, CopyrightStatus>> copyrightStatusesFuture = lookupRecordsByIds(
+        COPYRIGHT_STATUSES_TABLE, copyrightStatusIds, CopyrightStatus.class, okapiHeaders, context);
+    return CompositeFuture.all(locationsFuture, loanTypesFuture, processingStatusesFuture,
+        copyrightStatusesFuture)
+        .compose(x -> {
+          List<Future<Void>> populateFutureList = new ArrayList<>();
+          for (Reserve reserve : listOfReserves) {
+            if (reserve.getCopiedItem() == null) {
+              continue;
+            }
+            String copyrightStatusId = reserve.getCopyrightTracking() != null
+                ? reserve.getCopyrightTracking().getCopyrightStatusId() : null;
+            populateFutureList.add(populateReserveForRetrieval(reserve,
+                futureFromMap(locationsFuture.result(), reserve.getCopiedItem().getTemporaryLocationId(),
+                    "temporary location"),
+                futureFromMap(locationsFuture.result(), reserve.getCopiedItem().getPermanentLocationId(),
+                    "permanent location"),
+                futureFromMap(processingStatusesFuture.result(), reserve.getProcessingStatusId(),
+                    "processing status"),
+                futureFromMap(copyrightStatusesFuture.result(), copyrightStatusId, "copyright status"),
+                futureFromMap(loanTypesFuture.result(), reserve.getTemporaryLoanTypeId(),
+                    "temporary loan type")));
+          }
+          return GenericCompositeFuture.all(populateFutureList);
+        })
+        .map(x -> listOfReserves);
+  }
+
+  /*
+    Look up inventory records by id using as few requests as possible. The ids are split
+    into batches of ID_BATCH_SIZE, each resolved with an id==(a or b or ...) query.
+    Records already in INVENTORY_CACHE are not requested again.
+    Lookup failures are logged and result in missing entries, matching the lenient
+    behavior of the single record lookups.
+  */
+  public static Future<Map<String, JsonObject>> lookupInventoryRecordsByIds(String endpoint,
+      String collectionName, Collection<String> ids, Map<String, String> okapiHeaders,
+      OkapiClient okapiClient) {
+    Map<String, JsonObject> recordMap = new HashMap<>();
+    List<String> uncachedIds = new ArrayList<>();
+    boolean bypassCache = bypassInventoryCache(okapiHeaders);
+    for (String id : ids) {
+      String cacheKey = inventoryCacheKey(okapiHeaders, endpoint + "/" + id);
+      JsonObject cached = cacheKey == null || bypassCache ? null : INVENTORY_CACHE.get(cacheKey);
+      if (cached != null) {
+        recordMap.put(id, cached);
+      } else {
+        uncachedIds.add(id);
+      }
+    }
+    if (uncachedIds.isEmpty()) {
+      return Future.succeededFuture(recordMap);
+    }
+    return FanOut.map(partition(uncachedIds, ID_BATCH_SIZE), batch -> {
+      String query = makeIdListQuery(batch);
+      String requestPath = endpoint + "?limit=" + batch.size() + "&query=" + StringUtil.urlEncode(query);
+      logger.debug("Making batched request for {} at {}", collectionName, requestPath);
+      return okapiClient.get(requestPath, 200)
+          .map(json -> {
+            JsonArray records = json == null ? null : json.getJsonArray(collectionName);
+            if (records != null) {
+              for (int i = 0; i < records.size(); i++) {
+                JsonObject record = records.getJsonObject(i);
+                String id = record.getString("id");
+                String cacheKey = inventoryCacheKey(okapiHeaders, endpoint + "/" + id);
+                if (cacheKey != null) {
+                  INVENTORY_CACHE.put(cacheKey, record);
+                }
+                recordMap.put(id, record);
+              }
+            }
+            return records;
+          });
+    }, okapiHeaders)
+        .map(x -> recordMap)
+        .recover(e -> {
+          logger.info("Batched lookup of {} failed: {}", collectionName, e.getMessage());
+          return Future.succeededFuture(recordMap);
+        });
+  }
+
+  public static <T> Future<Map<String, T>> lookupRecordsByIds(String table,
+      Collection<String> ids, Class<T> clazz, Map<String, String> okapiHeaders, Context context) {
+    if (ids.isEmpty()) {
+      return Future.succeededFuture(new HashMap<>());
+    }
+    return REFERENCE_DATA_CACHE.getAll(TenantTool.tenantId(okapiHeaders), table, ids, clazz,
+        missingIds -> getPgClient(okapiHeaders, context)
+            .getById(table, new JsonArray(new ArrayList<>(missingIds)), clazz))
+        .recover(e -> {
+          logger.info("Batched lookup in {} failed: {}", table, e.getMessage());
+          return Future.succeededFuture(new HashMap<>());
+        });
+  }
+
+  /* Look up a record of a reference data table, see REFERENCE_DATA_CACHE */
+  public static <T> Future<T> lookupReferenceRecord(String table, String id, Class<T> clazz,
+      Map<String, String> okapiHeaders, Context context) {
+    return REFERENCE_DATA_CACHE.get(TenantTool.tenantId(okapiHeaders), table, id, clazz,
+        () -> getPgClient(okapiHeaders, context).getById(table, id, clazz));
+  }
+
+  public static String makeIdListQuery(List<String> ids) {
+    return makeListQuery("id", ids);
+  }
+
+  public static String makeListQuery(String field, List<String> values) {
+    StringBuilder query = new StringBuilder(field).append("==(");
+    for (int i = 0; i < values.size(); i++) {
+      if (i > 0) {
+        query.append(" or ");
+      }
+      query.append(StringUtil.cqlEncode(values.get(i)));
+    }
+    return query.append(")").toString();
+  }
+
+  /*
+    Find all inventory records whose field matches one of the values, with one
+    field==(a or b or ...) query per ID_BATCH_SIZE values. Unlike
+    lookupInventoryRecordsByIds this bypasses the cache and fails if a request fails.
+  */
+  public static Future<List<JsonObject>> lookupInventoryRecordsByField(String endpoint,
+      String collectionName, String field, Collection<String> values,
+      Map<String, String> okapiHeaders, OkapiClient okapiClient) {
+    List<JsonObject> recordList = new ArrayList<>();
+    if (values.isEmpty()) {
+      return Future.succeededFuture(recordList);
+    }
+    return FanOut.map(partition(new ArrayList<>(values), ID_BATCH_SIZE), batch -> {
+      // values need not be unique, such as barcodes, so leave room to detect duplicates
+      String requestPath = endpoint + "?limit=" + (2 * batch.size()) + "&query="
+          + StringUtil.urlEncode(makeListQuery(field, batch));
+      logger.debug("Making batched request for {} at {}", collectionName, requestPath);
+      return okapiClient.get(requestPath, 200)
+          .map(json -> json == null ? null : json.getJsonArray(collectionName));
+    }, okapiHeaders)
+        .map(batchList -> {
+          for (JsonArray records : batchList) {
+            if (records != null) {
+              for (int i = 0; i < records.size(); i++) {
+                recordList.add(records.getJsonObject(i));
+              }
+            }
+          }
+          return recordList;
+        });
+  }
+
+  /*
+    Batched counterpart of lookupItemHoldingsInstanceByItemId for many items given by
+    id or barcode. Items, their holdings and their instances are each fetched in one
+    stage of batched queries. Returns {"item", "holdings", "instance"} objects for every
+    item found whose holdings and instance exist too.
+  */
+  public static Future<List<JsonObject>> lookupItemHoldingsInstances(Collection<String> itemIds,
+      Collection<String> barcodes, Map<String, String> okapiHeaders, OkapiClient okapiClient) {
+    Future<List<JsonObject>> itemsByIdFuture = lookupInventoryRecordsByField(ITEMS_ENDPOINT,
+        "items", "id", itemIds, okapiHeaders, okapiClient);
+    Future<List<JsonObject>> itemsByBarcodeFuture = lookupInventoryRecordsByField(ITEMS_ENDPOINT,
+        "items", "barcode", barcodes, okapiHeaders, okapiClient);
+    Map<String, JsonObject> itemMap = new LinkedHashMap<>();
+    Map<String, JsonObject> holdingsMap = new HashMap<>();
+    return CompositeFuture.all(itemsByIdFuture, itemsByBarcodeFuture)
+        .compose(x -> {
+          Set<String> holdingsIds = new LinkedHashSet<>();
+          for (List<JsonObject> itemList : List.of(itemsByIdFuture.result(), itemsByBarcodeFuture.result())) {
+            for (JsonObject item : itemList) {
+              itemMap.put(item.getString("id"), item);
+              addIfNotNull(holdingsIds, item.getString("holdingsRecordId"));
+            }
+          }
+          return lookupInventoryRecordsByField(HOLDINGS_ENDPOINT, "holdingsRecords", "id",
+              holdingsIds, okapiHeaders, okapiClient);
+        })
+        .compose(holdingsList -> {
+          Set<String> instanceIds = new LinkedHashSet<>();
+          for (JsonObject holdings : holdingsList) {
+            holdingsMap.put(holdings.getString("id"), holdings);
+            addIfNotNull(instanceIds, holdings.getString("instanceId"));
+          }
+          return lookupInventoryRecordsByField(INSTANCES_ENDPOINT, "instances", "id",
+              instanceIds, okapiHeaders, okapiClient);
+        })
+        .map(instanceList -> {
+          Map<String, JsonObject> instanceMap = new HashMap<>();
+          for (JsonObject instance : instanceList) {
+            instanceMap.put(instance.getString("id"), instance);
+          }
+          List<JsonObject> resultList = new ArrayList<>();
+          for (JsonObject item : itemMap.values()) {
+            JsonObject holdings = holdingsMap.get(item.getString("holdingsRecordId"));
+            JsonObject instance = holdings == null ? null
+                : instanceMap.get(holdings.getString("instanceId"));
+            if (instance != null) {
+              resultList.add(new JsonObject()
+                  .put("item", item)
+                  .put("holdings", holdings)
+                  .put("instance", instance));
+            }
+          }
+          return resultList;
+        });
+  }
+
+  public static <T> List<List<T>> partition(List<T> list, int size) {
+    List<List<T>> partitionList = new ArrayList<>();
+    for (int i = 0; i < list.size(); i += size) {
+      partitionList.add(list.subList(i, Math.min(i + size, list.size())));
+    }
+    return partitionList;
+  }
+
+  private static <T> Future<T> futureFromMap(Map<String, T> map, String id, String description) {
+    if (id == null) {
+      return Future.failedFuture("No " + description + " id");
+    }
+    T value = map.get(id);
+    if (value == null) {
+      return Future.failedFuture("No " + description + " found for id " + id);
+    }
+    return Future.succeededFuture(value);
+  }
+
+  private static void addIfNotNull(Set<String> set, String value) {
+    if (value != null) {
+      set.add(value);
     }
-    return GenericCompositeFuture
-        .all(expandedReserveFutureList)
-        .map(CompositeFuture::list);
   }
 
   public static String getStringValueFromObjectArray(String fieldName, JsonArray array) {
@@ -229,6 +537,7 @@ public class CRUtil {
           holdingsJson.getString("callNumber"), holdingsJson.getString("callNumberSuffix"));
     }
     copiedItem.setCallNumber(callNumber);
+    copiedItem.setShelvingOrder(shelvingOrderKey(itemJson, holdingsJson));
     String temporaryLoanTypeId = itemJson.getString("temporaryLoanTypeId");
     if (reserve.getTemporaryLoanTypeId() == null) {
       reserve.setTemporaryLoanTypeId(temporaryLoanTypeId);
@@ -266,25 +575,55 @@ public class CRUtil {
     reserve.setCopiedItem(copiedItem);
   }
 
+  /*
+    Return item, holdings and instance of an item as {"item", "holdings", "instance"}.
+    A single inventory view request is tried first; the item, holdings and instance
+    records are requested one after another if that is not possible.
+  */
   public static Future<JsonObject> lookupItemHoldingsInstanceByItemId(String itemId,
-      Map<String, String> okapiHeaders, Context context) {
-    logger.info("Making request for item at {}/{}", ITEMS_ENDPOINT, itemId);
+      OkapiClient okapiClient) {
+    return lookupInventoryView("items.id==" + StringUtil.cqlEncode(itemId),
+        item -> itemId.equals(item.getString("id")), okapiClient)
+        .compose(viewResult -> {
+          if (viewResult != null) {
+            return Future.succeededFuture(viewResult);
+          }
+          logger.info("Making request for item at {}/{}", ITEMS_ENDPOINT, itemId);
+          return okapiClient.get(ITEMS_ENDPOINT + "/" + itemId, 200)
+              .compose(itemJson -> lookupHoldingsAndInstanceForItem(itemJson, okapiClient));
+        });
+  }
+
+  public static Future<JsonObject> lookupItemHoldingsInstanceByBarcode(String barcode,
+      OkapiClient okapiClient) {
+    return lookupInventoryView("items.barcode==" + StringUtil.cqlEncode(barcode),
+        item -> barcode.equals(item.getString("barcode")), okapiClient)
+        .compose(viewResult -> {
+          if (viewResult != null) {
+            return Future.succeededFuture(viewResult);
+          }
+          return lookupItemByBarcode(barcode, okapiClient)
+              .compose(itemJson -> {
+                if (itemJson == null) {
+                  return Future.failedFuture("No item found for barcode " + barcode);
+                }
+                return lookupHoldingsAndInstanceForItem(itemJson, okapiClient);
+              });
+        });
+  }
+
+  private static Future<JsonObject> lookupHoldingsAndInstanceForItem(JsonObject itemJson,
+      OkapiClient okapiClient) {
     JsonObject result = new JsonObject();
-    return makeOkapiRequest(context.owner(), okapiHeaders, ITEMS_ENDPOINT + "/" + itemId,
-        HttpMethod.GET, null, null, 200)
-        .compose(itemJson -> {
-          String holdingsId = itemJson.getString("holdingsRecordId");
-          result.put("item", itemJson);
-          logger.info("Making request for holdings at {}/{}", HOLDINGS_ENDPOINT, holdingsId);
-          return makeOkapiRequest(context.owner(), okapiHeaders, HOLDINGS_ENDPOINT + "/" + holdingsId,
-              HttpMethod.GET, null, null, 200);
-        })
+    String holdingsId = itemJson.getString("holdingsRecordId");
+    result.put("item", itemJson);
+    logger.info("Making request for holdings at {}/{}", HOLDINGS_ENDPOINT, holdingsId);
+    return okapiClient.get(HOLDINGS_ENDPOINT + "/" + holdingsId, 200)
         .compose(holdingsJson -> {
           String instanceId = holdingsJson.getString("instanceId");
           result.put("holdings", holdingsJson);
           logger.info("Making request for instance at {}/{}", INSTANCES_ENDPOINT, instanceId);
-          return makeOkapiRequest(context.owner(), okapiHeaders, INSTANCES_ENDPOINT + "/" + instanceId,
-              HttpMethod.GET, null, null, 200)
+          return okapiClient.get(INSTANCES_ENDPOINT + "/" + instanceId, 200)
               .map(instanceJson -> {
                 result.put("instance", instanceJson);
                 return result;
@@ -292,18 +631,80 @@ public class CRUtil {
         });
   }
 
+  /*
+    Query the inventory view for exactly one instance holding a matching item.
+    Succeeds with null whenever the view cannot give a definite answer: when it is
+    switched off, when the query does not match exactly one item, or when the request
+    fails. After a failure the view is not tried again for that tenant for a while.
+  */
+  private static Future<JsonObject> lookupInventoryView(String query,
+      Predicate<JsonObject> itemMatcher, OkapiClient okapiClient) {
+    String availabilityKey = okapiClient.getTenant() + "|" + okapiClient.getOkapiUrl();
+    if (!USE_INVENTORY_VIEW || INVENTORY_VIEW_UNAVAILABLE.get(availabilityKey) != null) {
+      return Future.succeededFuture(null);
+    }
+    String requestPath = INVENTORY_VIEW_ENDPOINT + "?limit=2&query=" + StringUtil.urlEncode(query);
+    logger.info("Making request for inventory view at {}", requestPath);
+    return okapiClient.get(requestPath, 200)
+        .map(viewJson -> hierarchyFromInventoryView(viewJson, itemMatcher))
+        .recover(e -> {
+          logger.info("Inventory view unavailable, using individual lookups: {}", e.getMessage());
+          INVENTORY_VIEW_UNAVAILABLE.put(availabilityKey, Boolean.TRUE);
+          return Future.succeededFuture(null);
+        });
+  }
+
+  public static JsonObject hierarchyFromInventoryView(JsonObject viewJson,
+      Predicate<JsonObject> itemMatcher) {
+    JsonArray instances = viewJson == null ? null : viewJson.getJsonArray("instances");
+    if (instances == null || instances.size() != 1) {
+      return null;
+    }
+    JsonObject view = instances.getJsonObject(0);
+    JsonObject item = findSingle(view.getJsonArray("items"), itemMatcher);
+    if (item == null) {
+      return null;
+    }
+    String holdingsId = item.getString("holdingsRecordId");
+    JsonObject holdings = findSingle(view.getJsonArray("holdingsRecords"),
+        record -> holdingsId != null && holdingsId.equals(record.getString("id")));
+    JsonObject instance = view.getJsonObject("instance");
+    if (holdings == null || instance == null) {
+      return null;
+    }
+    return new JsonObject()
+        .put("item", item)
+        .put("holdings", holdings)
+        .put("instance", instance);
+  }
+
+  private static JsonObject findSingle(JsonArray records, Predicate<JsonObject> matcher) {
+    if (records == null) {
+      return null;
+    }
+    JsonObject found = null;
+    for (int i = 0; i < records.size(); i++) {
+      JsonObject record = records.getJsonObject(i);
+      if (matcher.test(record)) {
+        if (found != null) {
+          return null;
+        }
+        found = record;
+      }
+    }
+    return found;
+  }
+
   public static Future<JsonObject> lookupUserAndGroupByUserId(String userId,
-      Map<String, String> okapiHeaders, Context context) {
+      OkapiClient okapiClient) {
     String userPath = "/users/" + userId;
     JsonObject result = new JsonObject();
-    return makeOkapiRequest(context.owner(), okapiHeaders, userPath, HttpMethod.GET,
-        null, null, 200)
+    return okapiClient.get(userPath, 200)
         .compose(userRes -> {
           result.put("user", userRes);
           String groupId = userRes.getString("patronGroup");
           String groupPath = "/groups/" + groupId;
-          return makeOkapiRequest(context.owner(), okapiHeaders, groupPath, HttpMethod.GET,
-              null, null, 200);
+          return okapiClient.get(groupPath, 200);
         })
         .map(groupRes -> {
           result.put("group", groupRes);
@@ -311,76 +712,16 @@ public class CRUtil {
         });
   }
 
-  public static Future<JsonObject> makeOkapiRequest(Vertx vertx,
-      Map<String, String> okapiHeaders, String requestPath, HttpMethod method,
-      Map<String, String> extraHeaders, String payload, Integer expectedCode) {
-    WebClient client = WebClientFactory.getWebClient(vertx);
-    MultiMap headers = MultiMap.caseInsensitiveMultiMap();
-    MultiMap originalHeaders = MultiMap.caseInsensitiveMultiMap();
-
-    originalHeaders.setAll(okapiHeaders);
-    String okapiUrl = originalHeaders.get(OKAPI_URL_HEADER);
-    if (okapiUrl == null) {
-      return Future.failedFuture("No okapi URL found in headers");
-    }
-    String requestUrl = okapiUrl + requestPath;
-    if (originalHeaders.contains(OKAPI_TOKEN_HEADER)) {
-      headers.add(OKAPI_TOKEN_HEADER, originalHeaders.get(OKAPI_TOKEN_HEADER));
-    }
-    if (originalHeaders.contains(OKAPI_TENANT_HEADER)) {
-      headers.add(OKAPI_TENANT_HEADER, originalHeaders.get(OKAPI_TENANT_HEADER));
-    }
-    headers.add("content-type", "application/json");
-    headers.add("accept", "application/json");
-    if (extraHeaders != null) {
-      for (Map.Entry<String, String> entry : extraHeaders.entrySet()) {
-        if (entry.getKey() != null && entry.getValue() != null) {
-          headers.add(entry.getKey(), entry.getValue());
-        }
-      }
-    }
-    logger.debug("Creating request for url {}", requestUrl);
-    HttpRequest<Buffer> request = client.requestAbs(method, requestUrl);
-    for (Map.Entry<String, String> entry : headers.entries()) {
-      String key = entry.getKey();
-      String value = entry.getValue();
-      if ( key != null && value != null) {
-        request.putHeader(key, value);
-      }
-    }
-    Future<HttpResponse<Buffer>> sentRequestFuture;
-    if (method == HttpMethod.PUT || method == HttpMethod.POST ) {
-      sentRequestFuture = request.sendBuffer(Buffer.buffer(payload));
-    } else {
-      sentRequestFuture = request.send();
-    }
-    return sentRequestFuture.compose(result -> {
-      String response = result.bodyAsString();
-      if (expectedCode != result.statusCode()) {
-        String message = String.format(
-            "Expected status code %s for %s request to url %s, got %s: %s",
-            expectedCode, method.toString(), requestUrl, result.statusCode(),
-            response);
-        logger.error(message);
-        return Future.failedFuture(message);
-      }
-      if (response == null || response.isEmpty()) {
-        return Future.succeededFuture(null);
-      }
-      return Future.succeededFuture(new JsonObject(response));
-    });
-  }
-
   public static Future<Reserve> lookupExpandedReserve(String reserveId,
-      Map<String, String> okapiHeaders, Context context) {
+      Map<String, String> okapiHeaders, Context context, OkapiClient okapiClient) {
     return getReserveById(reserveId, okapiHeaders, context).compose(reserve -> {
       if (reserve == null || reserve.getCopiedItem() == null) {
         return Future.succeededFuture(reserve);
       }
       Future<JsonObject> tempLocationFuture = lookupLocation(
-          reserve.getCopiedItem().getTemporaryLocationId(), okapiHeaders, context);
+          reserve.getCopiedItem().getTemporaryLocationId(), okapiHeaders, okapiClient);
       Future<JsonObject> permLocationFuture = lookupLocation(
-          reserve.getCopiedItem().getPermanentLocationId(), okapiHeaders, context);
+          reserve.getCopiedItem().getPermanentLocationId(), okapiHeaders, okapiClient);
       Future<ProcessingStatus> processingStatusFuture;
       if (reserve.getProcessingStatusId() != null) {
         processingStatusFuture = lookupProcessingStatus(
@@ -400,7 +741,7 @@ public class CRUtil {
       Future<JsonObject> loanTypeFuture;
       if (reserve.getTemporaryLoanTypeId() != null) {
         loanTypeFuture = lookupLoanType(reserve.getTemporaryLoanTypeId(),
-            okapiHeaders, context);
+            okapiHeaders, okapiClient);
       } else {
         loanTypeFuture = Future.failedFuture("No temporary loan type id");
       }
@@ -410,14 +751,13 @@ public class CRUtil {
   }
 
   public static Future<JsonObject> lookupItemByBarcode(String barcode,
-      Map<String, String> okapiHeaders, Context context) {
+      OkapiClient okapiClient) {
 
     String query = "barcode==" + StringUtil.cqlEncode(barcode);
     // TODO: replace StringUtil.urlEncode by PercentCodec.encode after upgrading to RMB 33
     String itemRequestUrl = ITEMS_ENDPOINT + "?query=" + StringUtil.urlEncode(query);
     logger.debug("Looking up item by barcode with url {}", itemRequestUrl);
-    return makeOkapiRequest(context.owner(), okapiHeaders, itemRequestUrl, HttpMethod.GET,
-        null, null, 200)
+    return okapiClient.get(itemRequestUrl, 200)
         .map(jsonObject -> {
           int totalRecords = jsonObject.getInteger("totalRecords");
           if (totalRecords > 1) {
@@ -442,14 +782,14 @@ public class CRUtil {
           if (reserve.getCopiedItem() != null) {
             if (tempLocationFuture.succeeded()) {
               reserve.getCopiedItem().setTemporaryLocationObject(
-                  temporaryLocationObjectFromJson(tempLocationFuture.result()));
+                  TEMPORARY_LOCATION_MAPPER.fromJson(tempLocationFuture.result()));
             } else {
               logger.info("TemporaryLocationObject lookup failed {}",
                   tempLocationFuture.cause().getMessage());
             }
             if (permLocationFuture.succeeded()) {
               reserve.getCopiedItem().setPermanentLocationObject(
-                  temporaryLocationObjectFromJson(permLocationFuture.result()));
+                  TEMPORARY_LOCATION_MAPPER.fromJson(permLocationFuture.result()));
             } else {
               logger.info("PermanentLocationObject lookup failed {}",
                   permLocationFuture.cause().getMessage());
@@ -477,7 +817,7 @@ public class CRUtil {
   }
 
   public static Future<CourseListing> lookupExpandedCourseListing(String courseListingId,
-      Map<String, String> okapiHeaders, Context context) {
+      Map<String, String> okapiHeaders, Context context, OkapiClient okapiClient) {
     return getCourseListingById(courseListingId, okapiHeaders, context).compose(courselisting -> {
       if (courselisting == null) {
         return Future.succeededFuture(null);
@@ -497,13 +837,13 @@ public class CRUtil {
       }
       String locationId = courselisting.getLocationId();
       if (locationId != null) {
-        futureList.add(lookupLocation(locationId, okapiHeaders, context)
-            .map(CRUtil::locationObjectFromJson)
+        futureList.add(lookupLocation(locationId, okapiHeaders, okapiClient)
+            .map(LOCATION_MAPPER::fromJson)
             .onSuccess(courselisting::setLocationObject));
       }
       String servicepointId = courselisting.getServicepointId();
       if (servicepointId != null) {
-        futureList.add(lookupServicepoint(servicepointId, okapiHeaders, context)
+        futureList.add(lookupServicepoint(servicepointId, okapiHeaders, okapiClient)
             .map(CRUtil::servicepointObjectFromJson)
             .onSuccess(courselisting::setServicepointObject));
       }
@@ -527,86 +867,105 @@ public class CRUtil {
     return postgresClient.getById(RESERVES_TABLE, reserveId, Reserve.class);
   }
 
-  public static void populatePojoFromJson(Object pojo, JsonObject json,
-      List<PopulateMapping> mapList) throws NoSuchMethodException,
-      IllegalAccessException, IllegalArgumentException, InvocationTargetException {
-    for (PopulateMapping popMap : mapList ) {
-      Object value;
-      Method method;
-      if (popMap.type.equals(ImportType.STRING)) {
-        value = json.getString(popMap.fieldName);
-        method = pojo.getClass().getMethod(popMap.methodName, String.class);
-      } else if (popMap.type.equals(ImportType.INTEGER)) {
-        value = json.getInteger(popMap.fieldName);
-        method = pojo.getClass().getMethod(popMap.methodName, Integer.class);
-      } else if (popMap.type.equals(ImportType.BOOLEAN)) {
-        value = json.getBoolean(popMap.fieldName);
-        method = pojo.getClass().getMethod(popMap.methodName, Boolean.class);
-      } else if (popMap.type.equals(ImportType.STRINGLIST)) {
-        List<String> stringList = new ArrayList<>();
-        JsonArray jsonArray = json.getJsonArray(popMap.fieldName);
-        if (jsonArray != null) {
-          for (Object ob : jsonArray) {
-            stringList.add((String) ob);
-          }
-        }
-        method = pojo.getClass().getMethod(popMap.methodName, List.class);
-        value = stringList;
-      } else {
-        throw new RuntimeException(popMap.type + " is not a valid type");
-      }
-      if (value != null) {
-        method.invoke(pojo, value);
-      }
-    }
+  /*
+    Resolves the setters on every call, use a PojoMapper for repeated conversions
+  */
+  public static <T> void populatePojoFromJson(T pojo, JsonObject json,
+      List<PopulateMapping> mapList) {
+    @SuppressWarnings("unchecked")
+    Class<T> clazz = (Class<T>) pojo.getClass();
+    PojoMapper.of(clazz, null, mapList).populate(pojo, json);
   }
 
   public static void copyFields(Object destinationPojo, Object sourcePojo) {
     if (destinationPojo == null || sourcePojo == null) {
       return;
     }
-    Method[] destinationMethods = destinationPojo.getClass().getMethods();
-    String patternString = "set(.+)";
-    Pattern pattern = Pattern.compile(patternString);
-    for (Method method : destinationMethods) {
-      String name = method.getName();
-      Matcher matcher = pattern.matcher(name);
-      if (!matcher.find()) {
-        continue;
-      }
-      String methodPart = matcher.group(1);
-      String getName = "get" + methodPart;
-      try {
-        Method getMethod = sourcePojo.getClass().getMethod(getName);
-        method.invoke(destinationPojo, getMethod.invoke(sourcePojo));
-      } catch(Exception e) {
-        logger.error(e.getMessage());
-      }
-    }
+    CopyPlan.of(destinationPojo.getClass(), sourcePojo.getClass())
+        .copy(destinationPojo, sourcePojo);
   }
 
   public static Future<JsonObject> lookupLocation(String locationId,
-      Map<String, String> okapiHeaders, Context context) {
-    String locationPath = LOCATIONS_ENDPOINT + "/" + locationId;
-    logger.debug("Making request for location at {}", locationPath);
-    return makeOkapiRequest(context.owner(), okapiHeaders, locationPath,
-        HttpMethod.GET, null, null, 200);
+      Map<String, String> okapiHeaders, OkapiClient okapiClient) {
+    return lookupCachedInventoryRecord(LOCATIONS_ENDPOINT, locationId, okapiHeaders,
+        okapiClient);
   }
 
   public static Future<JsonObject> lookupLoanType(String loanTypeId,
-      Map<String, String> okapiHeaders, Context context) {
-    String loanTypePath = LOAN_TYPES_ENDPOINT + "/" + loanTypeId;
-    logger.debug("Making request for location at {}", loanTypePath);
-    return makeOkapiRequest(context.owner(), okapiHeaders, loanTypePath,
-        HttpMethod.GET, null, null, 200);
+      Map<String, String> okapiHeaders, OkapiClient okapiClient) {
+    return lookupCachedInventoryRecord(LOAN_TYPES_ENDPOINT, loanTypeId, okapiHeaders,
+        okapiClient);
   }
 
   public static Future<JsonObject> lookupServicepoint(String servicepointId,
-      Map<String, String> okapiHeaders, Context context) {
-    String servicePointPath = SERVICE_POINTS_ENDPOINT + "/" + servicepointId;
-    logger.debug("Making request for servicepoint at {}", servicePointPath);
-    return makeOkapiRequest(context.owner(), okapiHeaders, servicePointPath,
-        HttpMethod.GET, null, null, 200);
+      Map<String, String> okapiHeaders, OkapiClient okapiClient) {
+    return lookupCachedInventoryRecord(SERVICE_POINTS_ENDPOINT, servicepointId, okapiHeaders,
+        okapiClient);
+  }
+
+  /*
+    Fetch a single inventory reference record, answering from INVENTORY_CACHE when
+    possible. Failed lookups are never cached.
+  */
+  public static Future<JsonObject> lookupCachedInventoryRecord(String endpoint, String id,
+      Map<String, String> okapiHeaders, OkapiClient okapiClient) {
+    String recordPath = endpoint + "/" + id;
+    String cacheKey = inventoryCacheKey(okapiHeaders, recordPath);
+    if (cacheKey != null && !bypassInventoryCache(okapiHeaders)) {
+      JsonObject cached = INVENTORY_CACHE.get(cacheKey);
+      if (cached != null) {
+        logger.debug("Using cached record for {}", recordPath);
+        return Future.succeededFuture(cached);
+      }
+    }
+    logger.debug("Making request for inventory record at {}", recordPath);
+    return okapiClient.get(recordPath, 200)
+        .onSuccess(json -> {
+          if (cacheKey != null) {
+            INVENTORY_CACHE.put(cacheKey, json);
+          }
+        });
+  }
+
+  /*
+    Cache keys are made of tenant, Okapi URL and record path, so that entries can
+    never be served to another tenant. Returns null when there is no tenant to scope to.
+  */
+  public static String inventoryCacheKey(Map<String, String> okapiHeaders, String recordPath) {
+    String tenant = OkapiClient.getHeader(okapiHeaders, OKAPI_TENANT_HEADER);
+    if (tenant == null) {
+      return null;
+    }
+    return tenant + "|" + OkapiClient.getHeader(okapiHeaders, OKAPI_URL_HEADER) + recordPath;
+  }
+
+  /*
+    A "Cache-Control: no-cache" request header skips cached entries; the freshly
+    fetched records then replace them
+  */
+  public static boolean bypassInventoryCache(Map<String, String> okapiHeaders) {
+    String cacheControl = OkapiClient.getHeader(okapiHeaders, CACHE_CONTROL_HEADER);
+    return cacheControl != null && cacheControl.toLowerCase().contains("no-cache");
+  }
+
+  public static void invalidateInventoryCache(String tenantId) {
+    String prefix = tenantId + "|";
+    INVENTORY_CACHE.invalidateIf(key -> key.startsWith(prefix));
+    INVENTORY_VIEW_UNAVAILABLE.invalidateIf(key -> key.startsWith(prefix));
+  }
+
+  public static CacheStatistic cacheStatistic(String name, TtlCache<?, ?> cache) {
+    long hits = cache.getHits();
+    long misses = cache.getMisses();
+    return new CacheStatistic()
+        .withName(name)
+        .withSize(cache.size())
+        .withMaxSize(cache.getMaxSize())
+        .withTtlSeconds((int) (cache.getTtlMillis() / 1000))
+        .withHits(hits)
+        .withMisses(misses)
+        .withEvictions(cache.getEvictions())
+        .withHitRatio(hits + misses == 0 ? 0.0 : (double) hits / (hits + misses));
   }
 
   public static Future<List<Instructor>> lookupInstructorsForCourseListing(
@@ -643,89 +1002,149 @@ public class CRUtil {
   }
 
   public static Future<Term> lookupTerm(String termId, Map<String, String> okapiHeaders, Context context) {
-    PostgresClient postgresClient = getPgClient(okapiHeaders, context);
-    return postgresClient.getById(TERMS_TABLE, termId, Term.class);
+    return lookupReferenceRecord(TERMS_TABLE, termId, Term.class, okapiHeaders, context);
   }
 
     public static Future<Department> lookupDepartment(String departmentId,
       Map<String, String> okapiHeaders, Context context) {
-    PostgresClient postgresClient = getPgClient(okapiHeaders, context);
-    return postgresClient.getById(DEPARTMENTS_TABLE, departmentId, Department.class);
+    return lookupReferenceRecord(DEPARTMENTS_TABLE, departmentId, Department.class,
+        okapiHeaders, context);
   }
 
   public static Future<CourseType> lookupCourseType(String courseTypeId,
       Map<String, String> okapiHeaders, Context context) {
-    PostgresClient postgresClient = getPgClient(okapiHeaders, context);
-    return postgresClient.getById(COURSE_TYPES_TABLE, courseTypeId, CourseType.class);
+    return lookupReferenceRecord(COURSE_TYPES_TABLE, courseTypeId, CourseType.class,
+        okapiHeaders, context);
   }
 
   public static Future<ProcessingStatus> lookupProcessingStatus(String processingStatusId,
       Map<String, String> okapiHeaders, Context context) {
-    PostgresClient postgresClient = getPgClient(okapiHeaders, context);
-    return postgresClient.getById(PROCESSING_STATUSES_TABLE, processingStatusId,
-        ProcessingStatus.class);
+    return lookupReferenceRecord(PROCESSING_STATUSES_TABLE, processingStatusId,
+        ProcessingStatus.class, okapiHeaders, context);
   }
 
   public static Future<CopyrightStatus> lookupCopyrightStatus(String copyrightStatusId,
       Map<String, String> okapiHeaders, Context context) {
-    PostgresClient postgresClient = getPgClient(okapiHeaders, context);
-    return postgresClient.getById(COPYRIGHT_STATUSES_TABLE, copyrightStatusId,
-        CopyrightStatus.class);
+    return lookupReferenceRecord(COPYRIGHT_STATUSES_TABLE, copyrightStatusId,
+        CopyrightStatus.class, okapiHeaders, context);
   }
+
+  /*
+    Expand a page of courses. Course listing, department, term and course type of all
+    courses are read with EXPANDED_COURSES_SQL, and the locations and service points of
+    the listings with one batched inventory query each.
+  */
   public static Future<List<Course>> expandListOfCourses(List<Course> listOfCourses,
-      Map<String, String> okapiHeaders, Context context) {
-    List<Future<Course>> expandedCourseFutureList = new ArrayList<>();
-    for (Course course : listOfCourses) {
-      expandedCourseFutureList.add(getExpandedCourse(course, okapiHeaders, context));
+      Map<String, String> okapiHeaders, Context context, OkapiClient okapiClient) {
+    List<UUID> courseIds = new ArrayList<>();
+    try {
+      for (Course course : listOfCourses) {
+        if (course.getId() != null) {
+          courseIds.add(UUID.fromString(course.getId()));
+        }
+      }
+    } catch (IllegalArgumentException e) {
+      return Future.failedFuture(e);
     }
-    return GenericCompositeFuture
-        .all(expandedCourseFutureList)
-        .map(CompositeFuture::list);
-  }
-
-  public static Future<Course> getExpandedCourse(Course course,
-      Map<String, String> okapiHeaders, Context context) {
-    Future<CourseListing> courseListingFuture;
-    if (course.getCourseListingId() == null) {
-      courseListingFuture = Future.succeededFuture();
+    Future<RowSet<Row>> rowsFuture;
+    if (courseIds.isEmpty()) {
+      rowsFuture = Future.succeededFuture();
     } else {
-      courseListingFuture = lookupExpandedCourseListing(course.getCourseListingId(),
-          okapiHeaders, context);
+      String schema = PostgresClient.convertToPsqlStandard(TenantTool.tenantId(okapiHeaders));
+      String sql = String.format(EXPANDED_COURSES_SQL, schema, COURSES_TABLE,
+          COURSE_LISTINGS_TABLE, DEPARTMENTS_TABLE, TERMS_TABLE, COURSE_TYPES_TABLE);
+      rowsFuture = getPgClient(okapiHeaders, context)
+          .select(sql, Tuple.of(courseIds.toArray(new UUID[0])));
     }
-    return courseListingFuture.compose(courseListing -> {
-      CourseListingObject expandedCourseListing = new CourseListingObject();
-      if (courseListing != null) {
-        copyFields(expandedCourseListing, courseListing);
+    return rowsFuture.compose(rows -> {
+      Map<String, Row> rowMap = new HashMap<>();
+      if (rows != null) {
+        for (Row row : rows) {
+          rowMap.put(row.getUUID("id").toString(), row);
+        }
       }
-      Course newCourse = copyCourse(course);
-      newCourse.setCourseListingObject(expandedCourseListing);
-
-      Future<Department> departmentFuture;
-      if (course.getDepartmentId() == null) {
-        departmentFuture = Future.succeededFuture();
-      } else {
-        departmentFuture = lookupDepartment(course.getDepartmentId(), okapiHeaders,
-            context);
+      List<Course> newCourseList = new ArrayList<>();
+      List<CourseListing> courseListingList = new ArrayList<>();
+      Set<String> locationIds = new LinkedHashSet<>();
+      Set<String> servicepointIds = new LinkedHashSet<>();
+      for (Course course : listOfCourses) {
+        Course newCourse = copyCourse(course);
+        Row row = course.getId() == null ? null : rowMap.get(course.getId());
+        CourseListing courseListing = null;
+        if (row != null) {
+          courseListing = readJsonb(row, "courselisting", CourseListing.class);
+          Department department = readJsonb(row, "department", Department.class);
+          if (department != null) {
+            DepartmentObject departmentObject = new DepartmentObject();
+            copyFields(departmentObject, department);
+            newCourse.setDepartmentObject(departmentObject);
+          }
+        }
+        if (courseListing != null) {
+          Term term = readJsonb(row, "term", Term.class);
+          if (term != null) {
+            courseListing.setTermObject(termObjectFromTerm(term));
+          }
+          CourseType courseType = readJsonb(row, "coursetype", CourseType.class);
+          if (courseType != null) {
+            courseListing.setCourseTypeObject(courseTypeObjectFromCourseType(courseType));
+          }
+          addIfNotNull(locationIds, courseListing.getLocationId());
+          addIfNotNull(servicepointIds, courseListing.getServicepointId());
+        }
+        newCourseList.add(newCourse);
+        courseListingList.add(courseListing);
       }
-      return departmentFuture.map(department -> {
-        if (department != null) {
-          DepartmentObject departmentObject = new DepartmentObject();
-          copyFields(departmentObject, department);
-          newCourse.setDepartmentObject(departmentObject);
+      Future<Map<String, JsonObject>> locationsFuture = lookupInventoryRecordsByIds(
+          LOCATIONS_ENDPOINT, "locations", locationIds, okapiHeaders, okapiClient);
+      Future<Map<String, JsonObject>> servicepointsFuture = lookupInventoryRecordsByIds(
+          SERVICE_POINTS_ENDPOINT, "servicepoints", servicepointIds, okapiHeaders, okapiClient);
+      return CompositeFuture.all(locationsFuture, servicepointsFuture).map(x -> {
+        for (int i = 0; i < newCourseList.size(); i++) {
+          CourseListing courseListing = courseListingList.get(i);
+          CourseListingObject expandedCourseListing = new CourseListingObject();
+          if (courseListing != null) {
+            // a location or service point that was not found is left out
+            JsonObject locationJson = courseListing.getLocationId() == null ? null
+                : locationsFuture.result().get(courseListing.getLocationId());
+            if (locationJson != null) {
+              courseListing.setLocationObject(LOCATION_MAPPER.fromJson(locationJson));
+            }
+            JsonObject servicepointJson = courseListing.getServicepointId() == null ? null
+                : servicepointsFuture.result().get(courseListing.getServicepointId());
+            if (servicepointJson != null) {
+              courseListing.setServicepointObject(servicepointObjectFromJson(servicepointJson));
+            }
+            copyFields(expandedCourseListing, courseListing);
+          }
+          newCourseList.get(i).setCourseListingObject(expandedCourseListing);
         }
-        return newCourse;
+        return newCourseList;
       });
     });
   }
 
-  public static Future<Void> putItemUpdate(JsonObject itemJson,
-      Map<String, String> okapiHeaders, Context context) {
+  public static Future<Course> getExpandedCourse(Course course,
+      Map<String, String> okapiHeaders, Context context, OkapiClient okapiClient) {
+    return expandListOfCourses(List.of(course), okapiHeaders, context, okapiClient)
+        .map(courseList -> courseList.get(0));
+  }
+
+  private static <T> T readJsonb(Row row, String column, Class<T> clazz) {
+    Object value = row.getValue(column);
+    if (value == null) {
+      return null;
+    }
+    return ObjectMapperTool.readValue(value.toString(), clazz);
+  }
+
+  public static Future<Void> putItemUpdate(JsonObject itemJson, OkapiClient okapiClient) {
     String id = itemJson.getString("id");
     String putPath = ITEMS_ENDPOINT + "/" + id;
     logger.info("Making PUT request to Okapi inventory storage with itemJson {}",
         itemJson::encode);
-    return makeOkapiRequest(context.owner(), okapiHeaders, putPath, HttpMethod.PUT,
-        textAcceptHeaders, itemJson.encode(), 204).mapEmpty();
+    return okapiClient.request(HttpMethod.PUT, putPath, textAcceptHeaders, itemJson.encode(),
+        204).mapEmpty();
   }
 
   private static Course copyCourse(Course originalCourse) {
@@ -751,36 +1170,6 @@ public class CRUtil {
     return courseTypeObject;
   }
 
-  private static LocationObject locationObjectFromJson(JsonObject json) {
-    if (json == null) {
-      return null;
-    }
-    LocationObject locationObject = new LocationObject();
-    try {
-      populatePojoFromJson(locationObject, json, LOCATION_MAP_LIST);
-    } catch (Exception e) {
-      logger.error("Unable to create location object from json: {}", e.getMessage());
-      return null;
-    }
-    return locationObject;
-  }
-
-
-  /*
-     Highly annoying to have to pretty much clone this function because of the odd
-     POJO name generation that RMB uses. Is there a better way?
-  */
-  private static TemporaryLocationObject temporaryLocationObjectFromJson(JsonObject json) {
-    TemporaryLocationObject locationObject = new TemporaryLocationObject();
-    try {
-      populatePojoFromJson(locationObject, json, LOCATION_MAP_LIST);
-    } catch (Exception e) {
-      logger.error("Unable to create temporary location object from json: {}", e.getMessage());
-      return null;
-    }
-    return locationObject;
-  }
-
   private static TemporaryLoanTypeObject temporaryLoanTypeObjectFromJson(JsonObject json) {
     TemporaryLoanTypeObject tlto = new TemporaryLoanTypeObject();
     tlto.setId(json.getString("id"));
@@ -789,22 +1178,8 @@ public class CRUtil {
   }
 
   private static ServicepointObject servicepointObjectFromJson(JsonObject json) {
-    if (json == null) {
-      return null;
-    }
-    ServicepointObject servicepointObject = new ServicepointObject();
-    List<PopulateMapping> mapList = new ArrayList<>();
-    mapList.add(new PopulateMapping("id"));
-    mapList.add(new PopulateMapping("name"));
-    mapList.add(new PopulateMapping("code"));
-    mapList.add(new PopulateMapping("discoveryDisplayName"));
-    mapList.add(new PopulateMapping("description"));
-    mapList.add(new PopulateMapping("shelvingLagTime", ImportType.INTEGER));
-    mapList.add(new PopulateMapping("pickupLocation", ImportType.BOOLEAN));
-    try {
-      populatePojoFromJson(servicepointObject, json, mapList);
-    } catch(Exception e) {
-      logger.error("Unable to create service point object from json: {}", e.getMessage());
+    ServicepointObject servicepointObject = SERVICEPOINT_MAPPER.fromJson(json);
+    if (servicepointObject == null) {
       return null;
     }
     try {
@@ -860,6 +1235,20 @@ public class CRUtil {
     return instructorObjectList;
   }
 
+  /*
+    The shelving order key of the call number of an item: its item level call number
+    if it has one, else that of its holdings, the same call number that is copied into
+    the reserve
+  */
+  public static String shelvingOrderKey(JsonObject itemJson, JsonObject holdingsJson) {
+    if (makeCallNumber(null, itemJson.getString("itemLevelCallNumber"), null) != null) {
+      return ShelvingOrder.key(itemJson.getString("itemLevelCallNumberPrefix"),
+          itemJson.getString("itemLevelCallNumber"), itemJson.getString("itemLevelCallNumberSuffix"));
+    }
+    return ShelvingOrder.key(holdingsJson.getString("callNumberPrefix"),
+        holdingsJson.getString("callNumber"), holdingsJson.getString("callNumberSuffix"));
+  }
+
   public static String makeCallNumber(String prefix, String number, String suffix) {
     if (number == null || number.isEmpty()) {
       return null;
@@ -0,0 +1,156 @@
+package org.folio.coursereserves.util;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import org.folio.dbschema.ObjectMapperTool;
+
+/*
+  Writes the JSON of a collection page from a stream of rows holding the id and the
+  jsonb text of the records, and possibly their sort key for a PageCursor. Without an
+  expander the text goes into the body as it is. With one, the rows are collected into
+  chunks; the stream is paused while a chunk is deserialized, expanded and serialized
+  again, so at most one chunk of records exists as POJOs at any time, no matter how
+  large the page is. The JSON text of the whole page is still held until toJson, as
+  RMB handlers return the response entity in one piece.
+*/
+public class CollectionWriter<T> {
+
+  private final StringBuilder body;
+  private final Class<T> clazz;
+  private final Function<List<T>, Future<List<T>>> expander;
+  private final int chunkSize;
+  private List<String> chunk = new ArrayList<>();
+  private Future<Void> written = Future.succeededFuture();
+  private int count;
+  private int items;
+  private String lastId;
+  private String lastKey;
+
+  public CollectionWriter(String collectionName, Class<T> clazz,
+      Function<List<T>, Future<List<T>>> expander, int chunkSize) {
+    this.body = new StringBuilder("{\"").append(collectionName).append("\":[");
+    this.clazz = clazz;
+    this.expander = expander;
+    this.chunkSize = chunkSize;
+  }
+
+  /* Number of rows read */
+  public int getCount() {
+    return count;
+  }
+
+  /* Id of the last row read */
+  public String getLastId() {
+    return lastId;
+  }
+
+  /* Sort key of the last row read, null if the rows have none */
+  public String getLastKey() {
+    return lastKey;
+  }
+
+  public Future<Void> write(RowStream<Row> stream) {
+    Promise<Void> promise = Promise.promise();
+    stream.exceptionHandler(promise::tryFail);
+    stream.endHandler(v -> flush().onComplete(promise));
+    stream.handler(row -> {
+      if (!read(row)) {
+        return;
+      }
+      stream.pause();
+      flush()
+          .onSuccess(x -> stream.resume())
+          .onFailure(e -> {
+            stream.close();
+            promise.tryFail(e);
+          });
+    });
+    return promise.future();
+  }
+
+  /*
+    Write rows that have already been read, such as a page of a plain select. Their
+    chunks are expanded one after the other.
+  */
+  public Future<Void> writeRows(Iterable<Row> rows) {
+    for (Row row : rows) {
+      if (read(row)) {
+        flush();
+      }
+    }
+    return flush();
+  }
+
+  /* The complete JSON, totalRecordsEstimated and nextCursor are left out if null */
+  public String toJson(long totalRecords, Boolean estimated, String nextCursor) {
+    body.append("],\"totalRecords\":").append(totalRecords);
+    if (estimated != null) {
+      body.append(",\"totalRecordsEstimated\":").append(estimated);
+    }
+    if (nextCursor != null) {
+      body.append(",\"nextCursor\":\"").append(nextCursor).append('"');
+    }
+    return body.append('}').toString();
+  }
+
+  /* Take in a row, true if it fills a chunk that is to be flushed */
+  private boolean read(Row row) {
+    count++;
+    lastId = row.getValue(0).toString();
+    lastKey = row.size() > 2 ? row.getString(2) : null;
+    if (expander == null) {
+      append(row.getString(1));
+      return false;
+    }
+    chunk.add(row.getString(1));
+    return chunk.size() >= chunkSize;
+  }
+
+  /*
+    Expand the collected rows once the chunks before them are written. The returned
+    future completes when their records have been written too.
+  */
+  private Future<Void> flush() {
+    if (chunk.isEmpty()) {
+      return written;
+    }
+    List<String> rows = chunk;
+    chunk = new ArrayList<>();
+    written = written.compose(x -> expand(rows));
+    return written;
+  }
+
+  private Future<Void> expand(List<String> rows) {
+    List<T> records = new ArrayList<>(rows.size());
+    try {
+      for (String record : rows) {
+        records.add(ObjectMapperTool.readValue(record, clazz));
+      }
+    } catch (Exception e) {
+      return Future.failedFuture(e);
+    }
+    return expander.apply(records).compose(expanded -> {
+      try {
+        for (T record : expanded) {
+          append(ObjectMapperTool.getMapper().writeValueAsString(record));
+        }
+        return Future.succeededFuture();
+      } catch (Exception e) {
+        return Future.failedFuture(e);
+      }
+    });
+  }
+
+  private void append(String json) {
+    if (items++ > 0) {
+      body.append(',');
+    }
+    body.append(json);
+  }
+}
@@ -0,0 +1,99 @@
+package org.folio.coursereserves.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/*
+  The pairs of getter on the source class and setter on the destination class
+  that copyFields calls, looked up once per (destination, source) class pair.
+  A setter setX is paired with a getter getX without arguments whose return type
+  fits the parameter of the setter; setters without such a getter are left out.
+*/
+public class CopyPlan {
+
+  private static final Logger logger = LogManager.getLogger(CopyPlan.class);
+
+  private static final MethodType GETTER_TYPE =
+      MethodType.methodType(Object.class, Object.class);
+  private static final MethodType SETTER_TYPE =
+      MethodType.methodType(void.class, Object.class, Object.class);
+
+  private static final Map<Class<?>, Map<Class<?>, CopyPlan>> PLANS =
+      new ConcurrentHashMap<>();
+
+  private final List<MethodHandle> getters;
+  private final List<MethodHandle> setters;
+
+  private CopyPlan(List<MethodHandle> getters, List<MethodHandle> setters) {
+    this.getters = getters;
+    this.setters = setters;
+  }
+
+  public static CopyPlan of(Class<?> destinationClass, Class<?> sourceClass) {
+    return PLANS.computeIfAbsent(destinationClass, c -> new ConcurrentHashMap<>())
+        .computeIfAbsent(sourceClass, c -> build(destinationClass, sourceClass));
+  }
+
+  public int size() {
+    return setters.size();
+  }
+
+  public void copy(Object destinationPojo, Object sourcePojo) {
+    for (int i = 0; i < setters.size(); i++) {
+      try {
+        setters.get(i).invokeExact(destinationPojo, getters.get(i).invokeExact(sourcePojo));
+      } catch (Throwable e) {
+        logger.error(e.getMessage());
+      }
+    }
+  }
+
+  private static CopyPlan build(Class<?> destinationClass, Class<?> sourceClass) {
+    List<MethodHandle> getters = new ArrayList<>();
+    List<MethodHandle> setters = new ArrayList<>();
+    MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+    for (Method setter : destinationClass.getMethods()) {
+      String name = setter.getName();
+      if (!name.startsWith("set") || name.length() == 3
+          || setter.getParameterCount() != 1) {
+        continue;
+      }
+      Method getter;
+      try {
+        getter = sourceClass.getMethod("get" + name.substring(3));
+      } catch (NoSuchMethodException e) {
+        continue;
+      }
+      if (!wrap(setter.getParameterTypes()[0]).isAssignableFrom(wrap(getter.getReturnType()))) {
+        continue;
+      }
+      try {
+        MethodHandle getterHandle = lookup.unreflect(getter).asType(GETTER_TYPE);
+        MethodHandle setterHandle = lookup.unreflect(setter).asType(SETTER_TYPE);
+        getters.add(getterHandle);
+        setters.add(setterHandle);
+      } catch (IllegalAccessException e) {
+        logger.warn("Unable to copy {} from {} to {}: {}", name.substring(3),
+            sourceClass.getName(), destinationClass.getName(), e.getMessage());
+      }
+    }
+    logger.debug("Copying {} fields from {} to {}", setters.size(),
+        sourceClass.getName(), destinationClass.getName());
+    return new CopyPlan(Collections.unmodifiableList(getters),
+        Collections.unmodifiableList(setters));
+  }
+
+  private static Class<?> wrap(Class<?> type) {
+    return type.isPrimitive() ? MethodType.methodType(type).wrap().returnType() : type;
+  }
+}
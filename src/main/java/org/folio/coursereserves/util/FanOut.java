@@ -0,0 +1,228 @@
+package org.folio.coursereserves.util;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import static org.folio.coursereserves.util.CRUtil.OKAPI_TENANT_HEADER;
+
+/*
+  Runs one asynchronous task per input with bounded parallelism. At most
+  maxInFlight tasks of one call run at the same time, and all calls for the same
+  tenant share a limit of TENANT_MAX_IN_FLIGHT, so that a single large request
+  cannot take all HTTP and database connections of the node.
+  Results are returned in input order. The first failure fails the result and no
+  further tasks are started.
+  The permits of a tenant are kept only while a call of the tenant has tasks to run,
+  so tenants that come and go do not add up over the life of the module.
+*/
+public class FanOut<T, R> {
+
+  public static final int MAX_IN_FLIGHT =
+      (int) Util.getLongConfig("courses.fanout.request", 10);
+  public static final int TENANT_MAX_IN_FLIGHT =
+      (int) Util.getLongConfig("courses.fanout.tenant", 50);
+
+  private static final Map<String, Permits> tenantPermits = new ConcurrentHashMap<>();
+
+  private final List<T> inputs;
+  private final Function<T, Future<R>> task;
+  private final int maxInFlight;
+  private final Permits permits;
+  private final Runnable whenIdle;
+  private final Object[] results;
+  private final Promise<List<R>> promise = Promise.promise();
+  private int next = 0;
+  private int inFlight = 0;
+  private int completed = 0;
+  private boolean failed = false;
+  private boolean draining = false;
+  private boolean idle = false;
+
+  private FanOut(List<T> inputs, Function<T, Future<R>> task, int maxInFlight,
+      Permits permits, Runnable whenIdle) {
+    this.inputs = inputs;
+    this.task = task;
+    this.maxInFlight = Math.max(1, maxInFlight);
+    this.permits = permits;
+    this.whenIdle = whenIdle;
+    this.results = new Object[inputs.size()];
+  }
+
+  public static <T, R> Future<List<R>> map(List<T> inputs, Function<T, Future<R>> task,
+      Map<String, String> okapiHeaders) {
+    String tenant = OkapiClient.getHeader(okapiHeaders, OKAPI_TENANT_HEADER);
+    String key = tenant == null ? "" : tenant;
+    Permits permits = leaseTenantPermits(key, TENANT_MAX_IN_FLIGHT);
+    return map(inputs, task, MAX_IN_FLIGHT, permits, () -> returnTenantPermits(key));
+  }
+
+  static <T, R> Future<List<R>> map(List<T> inputs, Function<T, Future<R>> task,
+      int maxInFlight, Permits permits) {
+    return map(inputs, task, maxInFlight, permits, null);
+  }
+
+  /* whenIdle, if not null, runs once no task of the call runs or will be started */
+  static <T, R> Future<List<R>> map(List<T> inputs, Function<T, Future<R>> task,
+      int maxInFlight, Permits permits, Runnable whenIdle) {
+    if (inputs.isEmpty()) {
+      if (whenIdle != null) {
+        whenIdle.run();
+      }
+      return Future.succeededFuture(new ArrayList<>());
+    }
+    FanOut<T, R> fanOut = new FanOut<>(inputs, task, maxInFlight, permits, whenIdle);
+    fanOut.drain();
+    return fanOut.promise.future();
+  }
+
+  /* The permits of tenant, counting the call as one of their users */
+  static Permits leaseTenantPermits(String tenant, int size) {
+    return tenantPermits.compute(tenant, (t, permits) -> {
+      Permits leased = permits == null ? new Permits(size) : permits;
+      leased.users++;
+      return leased;
+    });
+  }
+
+  /* End a lease of leaseTenantPermits, dropping the permits once they have no users */
+  static void returnTenantPermits(String tenant) {
+    tenantPermits.computeIfPresent(tenant, (t, permits) -> --permits.users == 0 ? null : permits);
+  }
+
+  static int tenantCount() {
+    return tenantPermits.size();
+  }
+
+  private void drain() {
+    synchronized (this) {
+      if (draining) {
+        return;
+      }
+      draining = true;
+    }
+    while (true) {
+      int index;
+      synchronized (this) {
+        if (failed || next >= inputs.size() || inFlight >= maxInFlight) {
+          draining = false;
+          return;
+        }
+        index = next++;
+        inFlight++;
+      }
+      permits.acquire(() -> run(index));
+    }
+  }
+
+  private void run(int index) {
+    synchronized (this) {
+      if (failed) {
+        inFlight--;
+        permits.release();
+        notifyIfIdle();
+        return;
+      }
+    }
+    Future<R> future;
+    try {
+      future = task.apply(inputs.get(index));
+    } catch (Exception e) {
+      future = Future.failedFuture(e);
+    }
+    future.onComplete(ar -> {
+      permits.release();
+      boolean done;
+      synchronized (this) {
+        inFlight--;
+        if (failed) {
+          notifyIfIdle();
+          return;
+        }
+        if (ar.failed()) {
+          failed = true;
+        } else {
+          results[index] = ar.result();
+          completed++;
+        }
+        done = failed || completed == results.length;
+        if (done) {
+          notifyIfIdle();
+        }
+      }
+      if (ar.failed()) {
+        promise.fail(ar.cause());
+      } else if (done) {
+        promise.complete(resultList());
+      } else {
+        drain();
+      }
+    });
+  }
+
+  /* Called holding the lock of this, once the call is failed or done */
+  private void notifyIfIdle() {
+    if (inFlight > 0 || idle || whenIdle == null) {
+      return;
+    }
+    idle = true;
+    whenIdle.run();
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<R> resultList() {
+    return (List<R>) new ArrayList<>(Arrays.asList(results));
+  }
+
+  /*
+    Asynchronous counting semaphore. Waiters are resumed on the context they
+    were queued from.
+  */
+  static class Permits {
+    private final Deque<Runnable> waiters = new ArrayDeque<>();
+    private int available;
+    /* Calls holding a lease, guarded by the map of tenantPermits */
+    private int users;
+
+    Permits(int size) {
+      this.available = Math.max(1, size);
+    }
+
+    void acquire(Runnable action) {
+      synchronized (this) {
+        if (available == 0) {
+          Context context = Vertx.currentContext();
+          waiters.add(context == null ? action : () -> context.runOnContext(v -> action.run()));
+          return;
+        }
+        available--;
+      }
+      action.run();
+    }
+
+    void release() {
+      Runnable waiter;
+      synchronized (this) {
+        waiter = waiters.poll();
+        if (waiter == null) {
+          available++;
+          return;
+        }
+      }
+      waiter.run();
+    }
+
+    synchronized int available() {
+      return available;
+    }
+  }
+}
@@ -0,0 +1,139 @@
+package org.folio.coursereserves.util;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.net.PemTrustOptions;
+import io.vertx.pgclient.PgConnectOptions;
+import io.vertx.pgclient.SslMode;
+import io.vertx.pgclient.pubsub.PgSubscriber;
+import io.vertx.sqlclient.Tuple;
+import java.util.Collections;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.folio.rest.persist.PostgresClient;
+
+/*
+  Tells the other instances of the module about writes to cached tables, using
+  Postgres NOTIFY on the database all instances share. A write publishes tenant,
+  table and, if known, id of the record, and every instance, including the one that
+  wrote, evicts the matching entries from REFERENCE_DATA_CACHE.
+  Notification channels are per database, not per schema, so there is one channel
+  for all tenants and the tenant is part of the event.
+  Events sent while an instance is not listening are lost, so the caches of an
+  instance are cleared whenever it (re)subscribes, and the TTL of the caches bounds
+  staleness if the subscription stays down.
+*/
+public class InvalidationBus {
+
+  private static final Logger logger = LogManager.getLogger(InvalidationBus.class);
+
+  public static final String CHANNEL = "mod_courses_cache_invalidation";
+  public static final long RECONNECT_DELAY =
+      Util.getLongConfig("courses.invalidation.reconnect", 5000);
+
+  private static final String NOTIFY_SQL = "SELECT pg_notify($1, $2)";
+  /* Key of the certificate of the database server in the RMB configuration, DB_SERVER_PEM */
+  private static final String SERVER_PEM = "server_pem";
+
+  private static PgSubscriber subscriber;
+
+  private InvalidationBus() {
+  }
+
+  /*
+    Listen for events, reconnecting after RECONNECT_DELAY if the connection drops.
+    Never fails, as the module works without the bus, only with staler caches.
+  */
+  public static synchronized Future<Void> start(Vertx vertx) {
+    if (subscriber != null) {
+      return Future.succeededFuture();
+    }
+    try {
+      JsonObject config = PostgresClient.getInstance(vertx).getConnectionConfig();
+      subscriber = PgSubscriber.subscriber(vertx, connectOptions(config))
+          .reconnectPolicy(retries -> RECONNECT_DELAY);
+      subscriber.channel(CHANNEL)
+          .subscribeHandler(v -> {
+            logger.info("Listening for cache invalidations on {}", CHANNEL);
+            CRUtil.REFERENCE_DATA_CACHE.invalidateAll();
+          })
+          .handler(InvalidationBus::handleEvent);
+      return subscriber.connect()
+          .recover(e -> {
+            logger.warn("Unable to listen for cache invalidations: {}", e.getMessage());
+            return Future.succeededFuture();
+          });
+    } catch (Exception e) {
+      logger.warn("Unable to listen for cache invalidations: {}", e.getMessage());
+      return Future.succeededFuture();
+    }
+  }
+
+  /*
+    Connect the way RMB connects its pools, including TLS with the server certificate
+    of DB_SERVER_PEM, whose factory for the options is not public
+  */
+  static PgConnectOptions connectOptions(JsonObject config) {
+    PgConnectOptions options = new PgConnectOptions()
+        .setHost(config.getString("host"))
+        .setPort(config.getInteger("port", PgConnectOptions.DEFAULT_PORT))
+        .setUser(config.getString("username"))
+        .setPassword(config.getString("password"))
+        .setDatabase(config.getString("database"));
+    String serverPem = config.getString(SERVER_PEM);
+    if (serverPem != null) {
+      options.setSslMode(SslMode.VERIFY_FULL)
+          .setHostnameVerificationAlgorithm("HTTPS")
+          .setPemTrustOptions(new PemTrustOptions().addCertValue(Buffer.buffer(serverPem)))
+          .setEnabledSecureTransportProtocols(Collections.singleton("TLSv1.3"));
+    }
+    return options;
+  }
+
+  public static synchronized Future<Void> stop() {
+    if (subscriber == null) {
+      return Future.succeededFuture();
+    }
+    PgSubscriber closing = subscriber;
+    subscriber = null;
+    return closing.close();
+  }
+
+  /*
+    Send an event for a write to table, id null meaning that any record of the table
+    may have changed. Failures are logged and otherwise ignored.
+  */
+  public static Future<Void> publish(Vertx vertx, String tenantId, String table, String id) {
+    String payload = new JsonObject()
+        .put("tenant", tenantId)
+        .put("table", table)
+        .put("id", id)
+        .encode();
+    return PostgresClient.getInstance(vertx, tenantId)
+        .execute(NOTIFY_SQL, Tuple.of(CHANNEL, payload))
+        .<Void>mapEmpty()
+        .recover(e -> {
+          logger.warn("Unable to publish cache invalidation {}: {}", payload, e.getMessage());
+          return Future.succeededFuture();
+        });
+  }
+
+  static void handleEvent(String payload) {
+    try {
+      JsonObject event = new JsonObject(payload);
+      String tenantId = event.getString("tenant");
+      String table = event.getString("table");
+      if (tenantId == null || table == null) {
+        logger.warn("Ignoring cache invalidation without tenant or table: {}", payload);
+        return;
+      }
+      logger.debug("Invalidating {}", payload);
+      CRUtil.REFERENCE_DATA_CACHE.invalidate(tenantId, table, event.getString("id"));
+    } catch (Exception e) {
+      logger.warn("Ignoring malformed cache invalidation {}: {}", payload, e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,165 @@
+package org.folio.coursereserves.util;
+
+import io.vertx.core.Future;
+import io.vertx.core.MultiMap;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.HttpRequest;
+import io.vertx.ext.web.client.HttpResponse;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.client.WebClientOptions;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.folio.okapi.common.WebClientFactory;
+
+import static org.folio.coursereserves.util.CRUtil.OKAPI_TENANT_HEADER;
+import static org.folio.coursereserves.util.CRUtil.OKAPI_TOKEN_HEADER;
+import static org.folio.coursereserves.util.CRUtil.OKAPI_URL_HEADER;
+
+/*
+  Client for requests to other modules through Okapi. An instance captures the
+  Okapi URL, tenant and token of one incoming request, so it should be created once
+  per request context and reused for all calls made on its behalf. The underlying
+  WebClient is the one WebClientFactory keeps for the Vertx instance.
+*/
+public class OkapiClient {
+
+  private static final Logger logger = LogManager.getLogger(OkapiClient.class);
+
+  /* Milliseconds without response data before a call fails, 0 for no limit */
+  public static final long DEFAULT_TIMEOUT =
+      Util.getLongConfig("courses.okapi.timeout", 60000);
+  public static final int MAX_POOL_SIZE =
+      (int) Util.getLongConfig("courses.okapi.pool.size", 20);
+  public static final boolean USE_COMPRESSION =
+      Util.getLongConfig("courses.okapi.compression", 1) != 0;
+
+  private static final SingleFlight<String, JsonObject> inFlightGets = new SingleFlight<>();
+
+  private final WebClient webClient;
+  private final String okapiUrl;
+  private final String tenant;
+  private final String token;
+  private final MultiMap headerTemplate = MultiMap.caseInsensitiveMultiMap();
+
+  public OkapiClient(Vertx vertx, Map<String, String> okapiHeaders) {
+    this.webClient = webClient(vertx);
+    this.okapiUrl = getHeader(okapiHeaders, OKAPI_URL_HEADER);
+    this.tenant = getHeader(okapiHeaders, OKAPI_TENANT_HEADER);
+    this.token = getHeader(okapiHeaders, OKAPI_TOKEN_HEADER);
+    if (token != null) {
+      headerTemplate.add(OKAPI_TOKEN_HEADER, token);
+    }
+    if (tenant != null) {
+      headerTemplate.add(OKAPI_TENANT_HEADER, tenant);
+    }
+    headerTemplate.add("content-type", "application/json");
+    headerTemplate.add("accept", "application/json");
+  }
+
+  /*
+    The shared WebClient of vertx; the options only count if no one has asked the
+    factory for the client of this Vertx before
+  */
+  private static WebClient webClient(Vertx vertx) {
+    return WebClientFactory.getWebClient(vertx, new WebClientOptions()
+        .setTryUseCompression(USE_COMPRESSION)
+        .setMaxPoolSize(MAX_POOL_SIZE)
+        .setKeepAlive(true));
+  }
+
+  /*
+    Case insensitive lookup of a header; RMB does not guarantee the case of the keys
+  */
+  public static String getHeader(Map<String, String> headers, String name) {
+    String value = headers.get(name);
+    if (value != null) {
+      return value;
+    }
+    for (Map.Entry<String, String> entry : headers.entrySet()) {
+      if (name.equalsIgnoreCase(entry.getKey())) {
+        return entry.getValue();
+      }
+    }
+    return null;
+  }
+
+  public String getTenant() {
+    return tenant;
+  }
+
+  public String getOkapiUrl() {
+    return okapiUrl;
+  }
+
+  /*
+    Identical GET requests that are outstanding at the same time share one HTTP
+    request, but only within the same tenant and token so that a caller never sees
+    a response it was not authorized to receive. Each caller gets its own copy of the
+    response, as some callers modify it.
+  */
+  public Future<JsonObject> get(String requestPath, Integer expectedCode) {
+    if (tenant == null || okapiUrl == null) {
+      return request(HttpMethod.GET, requestPath, null, null, expectedCode, DEFAULT_TIMEOUT);
+    }
+    String key = String.join("|", tenant, String.valueOf(token),
+        String.valueOf(expectedCode), okapiUrl + requestPath);
+    return inFlightGets.execute(key, () -> request(HttpMethod.GET, requestPath, null, null,
+        expectedCode, DEFAULT_TIMEOUT))
+        .map(json -> json == null ? null : json.copy());
+  }
+
+  public Future<JsonObject> request(HttpMethod method, String requestPath,
+      Map<String, String> extraHeaders, String payload, Integer expectedCode) {
+    if (method == HttpMethod.GET && extraHeaders == null && payload == null) {
+      return get(requestPath, expectedCode);
+    }
+    return request(method, requestPath, extraHeaders, payload, expectedCode, DEFAULT_TIMEOUT);
+  }
+
+  public Future<JsonObject> request(HttpMethod method, String requestPath,
+      Map<String, String> extraHeaders, String payload, Integer expectedCode, long timeout) {
+    if (okapiUrl == null) {
+      return Future.failedFuture("No okapi URL found in headers");
+    }
+    String requestUrl = okapiUrl + requestPath;
+    logger.debug("Creating request for url {}", requestUrl);
+    HttpRequest<Buffer> request = webClient.requestAbs(method, requestUrl)
+        .putHeaders(headerTemplate);
+    if (extraHeaders != null) {
+      for (Map.Entry<String, String> entry : extraHeaders.entrySet()) {
+        if (entry.getKey() != null && entry.getValue() != null) {
+          request.putHeader(entry.getKey(), entry.getValue());
+        }
+      }
+    }
+    if (timeout > 0) {
+      request.timeout(timeout);
+    }
+    Future<HttpResponse<Buffer>> sentRequestFuture;
+    if (method == HttpMethod.PUT || method == HttpMethod.POST) {
+      sentRequestFuture = request.sendBuffer(Buffer.buffer(payload));
+    } else {
+      sentRequestFuture = request.send();
+    }
+    return sentRequestFuture.compose(result -> {
+      Buffer body = result.body();
+      if (expectedCode != result.statusCode()) {
+        String message = String.format(
+            "Expected status code %s for %s request to url %s, got %s: %s",
+            expectedCode, method.toString(), requestUrl, result.statusCode(),
+            body == null ? null : body.toString());
+        logger.error(message);
+        return Future.failedFuture(message);
+      }
+      if (body == null || body.length() == 0) {
+        return Future.succeededFuture(null);
+      }
+      return Future.succeededFuture(body.toJsonObject());
+    });
+  }
+}
@@ -0,0 +1,221 @@
+package org.folio.coursereserves.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import io.vertx.sqlclient.Tuple;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import org.folio.cql2pgjson.CQL2PgJSON;
+import org.folio.cql2pgjson.model.SqlSelect;
+import org.z3950.zing.cql.CQLNode;
+import org.z3950.zing.cql.CQLParser;
+import org.z3950.zing.cql.CQLSortNode;
+import org.z3950.zing.cql.Modifier;
+import org.z3950.zing.cql.ModifierSet;
+
+/*
+  Keyset paging over a collection ordered by id, or by one sortby field and then id.
+  A page asked for with a cursor holds the records after the (sort key, id) in the
+  cursor, so the database can start from that position instead of scanning and
+  discarding all earlier records like an offset does. START begins at the first
+  record. The cursor is opaque to clients, who only pass on the nextCursor of the
+  previous page with the same query.
+  The sort key is the field in lower case without accents, like CQL2PgJSON sorts,
+  with records lacking the field sorting as if it were empty. Only the fields of
+  SORT_FIELDS can be sorted by, schema.json has an index on their key and id each.
+  The position of the cursor is passed to the SQL as parameters.
+*/
+public class PageCursor {
+
+  public static final String START = "*";
+
+  private static final String PREFIX = "id:";
+  private static final String KEY_PREFIX = "key:";
+  private static final Map<String, Set<String>> SORT_FIELDS = Map.of(
+      "coursereserves_reserves", Set.of("copiedItem.title", "copiedItem.shelvingOrder"),
+      "coursereserves_courses", Set.of("name", "courseNumber"));
+
+  /* Where a page ends: the id and, if the query sorts by a field, the sort key of its last record */
+  public static class Position {
+    private final String key;
+    private final String id;
+
+    Position(String key, String id) {
+      this.key = key;
+      this.id = id;
+    }
+
+    public String getKey() {
+      return key;
+    }
+
+    public String getId() {
+      return id;
+    }
+  }
+
+  /* FROM and WHERE, ORDER BY, the sort key column and the parameters of the SQL for a page */
+  public static class Page {
+    private final String fromWhere;
+    private final String after;
+    private final Tuple params;
+    private final String key;
+    private final String direction;
+
+    Page(String fromWhere, String after, Tuple params, String key, boolean descending) {
+      this.fromWhere = fromWhere;
+      this.after = after;
+      this.params = params;
+      this.key = key;
+      this.direction = descending ? " DESC" : "";
+    }
+
+    /* FROM and WHERE of all records matching the query, without parameters */
+    public String getFromWhere() {
+      return fromWhere;
+    }
+
+    /* The condition for the records after the cursor, to be ANDed to getFromWhere, or empty */
+    public String getAfter() {
+      return after;
+    }
+
+    /* The parameters of getAfter */
+    public Tuple getParams() {
+      return params;
+    }
+
+    /* The sort key to select after id and jsonb, empty if the records are ordered by id */
+    public String getKeyColumn() {
+      return key == null ? "" : ", " + key;
+    }
+
+    public String getOrderBy() {
+      if (key == null) {
+        return " ORDER BY id" + direction;
+      }
+      return " ORDER BY " + key + direction + ", id" + direction;
+    }
+  }
+
+  private PageCursor() {
+  }
+
+  public static String encode(String lastId) {
+    return encode(null, lastId);
+  }
+
+  /* The cursor after a record with the sort key, null if ordered by id, and id */
+  public static String encode(String lastKey, String lastId) {
+    String position = lastKey == null ? PREFIX + lastId : KEY_PREFIX + lastId + ":" + lastKey;
+    return Base64.getUrlEncoder().withoutPadding()
+        .encodeToString(position.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /* The last id of the previous page, or null for START */
+  public static String decode(String cursor) {
+    Position position = decodePosition(cursor);
+    return position == null ? null : position.getId();
+  }
+
+  /* The end of the previous page, or null for START */
+  public static Position decodePosition(String cursor) {
+    if (START.equals(cursor)) {
+      return null;
+    }
+    try {
+      String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+      if (decoded.startsWith(PREFIX)) {
+        return new Position(null, UUID.fromString(decoded.substring(PREFIX.length())).toString());
+      }
+      int colon = decoded.indexOf(':', KEY_PREFIX.length());
+      if (decoded.startsWith(KEY_PREFIX) && colon > 0 && decoded.indexOf('\0') < 0) {
+        return new Position(decoded.substring(colon + 1),
+            UUID.fromString(decoded.substring(KEY_PREFIX.length(), colon)).toString());
+      }
+    } catch (IllegalArgumentException e) {
+      // reported below
+    }
+    throw new IllegalArgumentException("Invalid cursor: " + cursor);
+  }
+
+  /*
+    The SQL for the records of table matching the CQL query that come after cursor.
+    The query may sort by id or one field of SORT_FIELDS, in either direction; the
+    cursor must come from a page of a query with the same sort.
+  */
+  public static Page page(String schema, String table, String query, String cursor)
+      throws Exception {
+    Position position = decodePosition(cursor);
+    String key = null;
+    boolean descending = false;
+    StringBuilder sql = new StringBuilder(" FROM ").append(schema).append('.').append(table);
+    sql.append(" WHERE ");
+    if (query != null && !query.isBlank()) {
+      ModifierSet sortIndex = sortIndex(query);
+      if (sortIndex != null) {
+        if (!"id".equals(sortIndex.getBase())) {
+          key = keyExpression(table, sortIndex.getBase());
+        }
+        descending = isDescending(sortIndex);
+      }
+      SqlSelect sqlSelect = new CQL2PgJSON(table + ".jsonb").toSql(query);
+      sql.append('(').append(sqlSelect.getWhere()).append(')');
+    } else {
+      sql.append("true");
+    }
+    if (position == null) {
+      return new Page(sql.toString(), "", Tuple.tuple(), key, descending);
+    }
+    if ((key == null) != (position.getKey() == null)) {
+      throw new IllegalArgumentException("Cursor does not match the sortby of the query");
+    }
+    String operator = descending ? " < " : " > ";
+    UUID lastId = UUID.fromString(position.getId());
+    if (key == null) {
+      return new Page(sql.toString(), " AND id" + operator + "$1", Tuple.of(lastId), key,
+          descending);
+    }
+    return new Page(sql.toString(), " AND (" + key + ", id)" + operator + "($1, $2)",
+        Tuple.of(position.getKey(), lastId), key, descending);
+  }
+
+  /* The single sort index of the query, null if it does not sort or does not parse */
+  private static ModifierSet sortIndex(String query) {
+    CQLNode node;
+    try {
+      node = new CQLParser().parse(query);
+    } catch (Exception e) {
+      // CQL2PgJSON reports the error
+      return null;
+    }
+    if (!(node instanceof CQLSortNode)) {
+      return null;
+    }
+    List<ModifierSet> sortIndexes = ((CQLSortNode) node).getSortIndexes();
+    if (sortIndexes.size() > 1) {
+      throw new IllegalArgumentException("Paging with cursor supports sortby one field only");
+    }
+    return sortIndexes.isEmpty() ? null : sortIndexes.get(0);
+  }
+
+  private static boolean isDescending(ModifierSet sortIndex) {
+    for (Modifier modifier : sortIndex.getModifiers()) {
+      if ("sort.descending".equalsIgnoreCase(modifier.getType())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static String keyExpression(String table, String field) {
+    if (!SORT_FIELDS.getOrDefault(table, Set.of()).contains(field)) {
+      throw new IllegalArgumentException("Invalid sortby field for paging with cursor: " + field);
+    }
+    return "coalesce(lower(f_unaccent(" + table + ".jsonb #>> '{" + field.replace('.', ',')
+        + "}')), '')";
+  }
+}
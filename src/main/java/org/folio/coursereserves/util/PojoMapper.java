@@ -0,0 +1,122 @@
+package org.folio.coursereserves.util;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.folio.coursereserves.util.PopulateMapping.ImportType;
+
+/*
+  Builds POJOs of one class from inventory JSON according to a list of
+  PopulateMapping entries. The setters are resolved once, when the mapper is
+  created, so a missing setter shows up at startup rather than per record.
+*/
+public class PojoMapper<T> {
+
+  private static final Logger logger = LogManager.getLogger(PojoMapper.class);
+
+  private static final MethodType SETTER_TYPE =
+      MethodType.methodType(void.class, Object.class, Object.class);
+
+  private final Class<T> clazz;
+  private final Supplier<T> constructor;
+  private final PopulateMapping[] mappings;
+  private final MethodHandle[] setters;
+
+  private PojoMapper(Class<T> clazz, Supplier<T> constructor, List<PopulateMapping> mapList) {
+    this.clazz = clazz;
+    this.constructor = constructor;
+    this.mappings = mapList.toArray(new PopulateMapping[0]);
+    this.setters = new MethodHandle[mappings.length];
+    MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+    for (int i = 0; i < mappings.length; i++) {
+      try {
+        setters[i] = lookup.unreflect(clazz.getMethod(mappings[i].methodName,
+            parameterType(mappings[i].type))).asType(SETTER_TYPE);
+      } catch (ReflectiveOperationException e) {
+        throw new IllegalArgumentException("Unable to map field '" + mappings[i].fieldName
+            + "' to " + clazz.getName() + ": " + e.getMessage(), e);
+      }
+    }
+  }
+
+  public static <T> PojoMapper<T> of(Class<T> clazz, Supplier<T> constructor,
+      List<PopulateMapping> mapList) {
+    return new PojoMapper<>(clazz, constructor, mapList);
+  }
+
+  /* A new POJO populated from json, or null if json is null or does not fit */
+  public T fromJson(JsonObject json) {
+    if (json == null) {
+      return null;
+    }
+    T pojo = constructor.get();
+    try {
+      populate(pojo, json);
+    } catch (Exception e) {
+      logger.error("Unable to create {} from json: {}", clazz.getSimpleName(), e.getMessage());
+      return null;
+    }
+    return pojo;
+  }
+
+  /* Set the mapped fields of pojo that have a value in json */
+  public void populate(T pojo, JsonObject json) {
+    for (int i = 0; i < mappings.length; i++) {
+      Object value = value(json, mappings[i]);
+      if (value != null) {
+        try {
+          setters[i].invokeExact((Object) pojo, value);
+        } catch (RuntimeException | Error e) {
+          throw e;
+        } catch (Throwable e) {
+          throw new IllegalStateException(e);
+        }
+      }
+    }
+  }
+
+  private static Object value(JsonObject json, PopulateMapping popMap) {
+    switch (popMap.type) {
+      case STRING:
+        return json.getString(popMap.fieldName);
+      case INTEGER:
+        return json.getInteger(popMap.fieldName);
+      case BOOLEAN:
+        return json.getBoolean(popMap.fieldName);
+      case STRINGLIST:
+        List<String> stringList = new ArrayList<>();
+        JsonArray jsonArray = json.getJsonArray(popMap.fieldName);
+        if (jsonArray != null) {
+          for (Object ob : jsonArray) {
+            stringList.add((String) ob);
+          }
+        }
+        return stringList;
+      default:
+        throw new IllegalArgumentException(popMap.type + " is not a valid type");
+    }
+  }
+
+  private static Class<?> parameterType(ImportType type) {
+    switch (type) {
+      case STRING:
+        return String.class;
+      case INTEGER:
+        return Integer.class;
+      case BOOLEAN:
+        return Boolean.class;
+      case STRINGLIST:
+        return List.class;
+      default:
+        throw new IllegalArgumentException(type + " is not a valid type");
+    }
+  }
+}
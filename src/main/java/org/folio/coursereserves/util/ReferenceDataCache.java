@@ -0,0 +1,124 @@
+package org.folio.coursereserves.util;
+
+import io.vertx.core.Future;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/*
+  Records of the small reference data tables (terms, departments, course types,
+  processing and copyright statuses) by tenant, table and id.
+  Writes to a table must call invalidate once they have completed. Every invalidation
+  starts a new generation of the table, and a lookup that was already running stores
+  its result only if the generation is still the one it started in, so a read that
+  raced with a write can not put the old record back.
+  Cached records are shared and must not be modified.
+*/
+public class ReferenceDataCache {
+
+  private static final String ALL = "";
+
+  private final TtlCache<String, Object> cache;
+  private final Map<String, Long> generations = new HashMap<>();
+
+  public ReferenceDataCache(int maxSize, long ttlMillis) {
+    this(new TtlCache<>(maxSize, ttlMillis));
+  }
+
+  ReferenceDataCache(TtlCache<String, Object> cache) {
+    this.cache = cache;
+  }
+
+  public TtlCache<String, Object> getCache() {
+    return cache;
+  }
+
+  public <T> Future<T> get(String tenantId, String table, String id, Class<T> clazz,
+      Supplier<Future<T>> loader) {
+    String scope = scope(tenantId, table);
+    Object cached = cache.get(scope + id);
+    if (cached != null) {
+      return Future.succeededFuture(clazz.cast(cached));
+    }
+    long generation = generation(tenantId, scope);
+    return loader.get().onSuccess(value -> put(tenantId, scope, generation, id, value));
+  }
+
+  /*
+    Return the cached records among ids and load the others with a single call of
+    loader, which receives the missing ids
+  */
+  public <T> Future<Map<String, T>> getAll(String tenantId, String table,
+      Collection<String> ids, Class<T> clazz,
+      Function<Collection<String>, Future<Map<String, T>>> loader) {
+    String scope = scope(tenantId, table);
+    Map<String, T> recordMap = new HashMap<>();
+    Collection<String> missingIds = new ArrayList<>();
+    for (String id : ids) {
+      Object cached = cache.get(scope + id);
+      if (cached != null) {
+        recordMap.put(id, clazz.cast(cached));
+      } else {
+        missingIds.add(id);
+      }
+    }
+    if (missingIds.isEmpty()) {
+      return Future.succeededFuture(recordMap);
+    }
+    long generation = generation(tenantId, scope);
+    return loader.apply(missingIds).map(loaded -> {
+      for (Map.Entry<String, T> entry : loaded.entrySet()) {
+        put(tenantId, scope, generation, entry.getKey(), entry.getValue());
+        recordMap.put(entry.getKey(), entry.getValue());
+      }
+      return recordMap;
+    });
+  }
+
+  public synchronized void invalidate(String tenantId, String table) {
+    invalidate(tenantId, table, null);
+  }
+
+  /* Drop one record of the table, or all of them if id is null */
+  public synchronized void invalidate(String tenantId, String table, String id) {
+    String scope = scope(tenantId, table);
+    generations.merge(scope, 1L, Long::sum);
+    if (id == null) {
+      cache.invalidateIf(key -> key.startsWith(scope));
+    } else {
+      cache.invalidate(scope + id);
+    }
+  }
+
+  public synchronized void invalidateTenant(String tenantId) {
+    String prefix = tenantId + "|";
+    generations.merge(prefix, 1L, Long::sum);
+    cache.invalidateIf(key -> key.startsWith(prefix));
+  }
+
+  public synchronized void invalidateAll() {
+    generations.merge(ALL, 1L, Long::sum);
+    cache.clear();
+  }
+
+  /* Changes whenever the table, the tenant or the whole cache is invalidated */
+  private synchronized long generation(String tenantId, String scope) {
+    return generations.getOrDefault(scope, 0L)
+        + generations.getOrDefault(tenantId + "|", 0L)
+        + generations.getOrDefault(ALL, 0L);
+  }
+
+  private synchronized void put(String tenantId, String scope, long generation, String id,
+      Object value) {
+    if (value != null && generation(tenantId, scope) == generation) {
+      cache.put(scope + id, value);
+    }
+  }
+
+  private static String scope(String tenantId, String table) {
+    return tenantId + "|" + table + "|";
+  }
+}
@@ -0,0 +1,97 @@
+package org.folio.coursereserves.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/*
+  Sets derived fields of a class to null. Each field is given as a dotted path
+  like "copiedItem.temporaryLocationObject", which is resolved once against the
+  declared types into the getters leading to the object holding the field and
+  the setter of the field. Scrubbing a path stops at the first null on the way.
+*/
+public class ScrubPlan {
+
+  private static final Logger logger = LogManager.getLogger(ScrubPlan.class);
+
+  private static final MethodType GETTER_TYPE =
+      MethodType.methodType(Object.class, Object.class);
+  private static final MethodType SETTER_TYPE =
+      MethodType.methodType(void.class, Object.class, Object.class);
+
+  private final List<String> fields = new ArrayList<>();
+  private final List<MethodHandle[]> getterChains = new ArrayList<>();
+  private final List<MethodHandle> setters = new ArrayList<>();
+
+  private ScrubPlan() {
+  }
+
+  public static ScrubPlan of(Class<?> clazz, String... fields) {
+    ScrubPlan plan = new ScrubPlan();
+    for (String field : fields) {
+      try {
+        plan.add(clazz, field);
+      } catch (Exception e) {
+        throw new IllegalArgumentException("Unable to scrub field '" + field + "' of "
+            + clazz.getName() + ": " + e.getMessage(), e);
+      }
+    }
+    return plan;
+  }
+
+  public void scrub(Object pojo) {
+    for (int i = 0; i < setters.size(); i++) {
+      Object currentObject = pojo;
+      try {
+        for (MethodHandle getter : getterChains.get(i)) {
+          currentObject = getter.invokeExact(currentObject);
+          if (currentObject == null) {
+            break;
+          }
+        }
+        if (currentObject != null) {
+          setters.get(i).invokeExact(currentObject, (Object) null);
+        }
+      } catch (Throwable e) {
+        logger.debug("Error scrubbing derived field '{}' of object {}: {}",
+            fields.get(i), pojo.getClass().getName(), e.getMessage(), e);
+      }
+    }
+  }
+
+  private void add(Class<?> clazz, String field) throws ReflectiveOperationException {
+    MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+    String[] subFields = field.split("\\.");
+    MethodHandle[] getters = new MethodHandle[subFields.length - 1];
+    Class<?> currentClass = clazz;
+    for (int i = 0; i < getters.length; i++) {
+      Method getter = currentClass.getMethod("get" + capitalize(subFields[i]));
+      getters[i] = lookup.unreflect(getter).asType(GETTER_TYPE);
+      currentClass = getter.getReturnType();
+    }
+    String setterName = "set" + capitalize(subFields[subFields.length - 1]);
+    Method setter = null;
+    for (Method method : currentClass.getMethods()) {
+      if (method.getName().equals(setterName) && method.getParameterCount() == 1) {
+        setter = method;
+        break;
+      }
+    }
+    if (setter == null) {
+      throw new NoSuchMethodException(currentClass.getName() + "." + setterName);
+    }
+    fields.add(field);
+    getterChains.add(getters);
+    setters.add(lookup.unreflect(setter).asType(SETTER_TYPE));
+  }
+
+  private static String capitalize(String name) {
+    return name.substring(0, 1).toUpperCase() + name.substring(1);
+  }
+}
@@ -0,0 +1,77 @@
+package org.folio.coursereserves.util;
+
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/*
+  A key for a call number whose plain string order is the order on the shelf.
+  Library of Congress numbers get their class letters padded to three characters
+  and their class number padded to five digits, so that QA9 comes before QA76 and
+  Q76 before QA1. Dewey numbers get their integer part padded to three digits.
+  A missing decimal counts as .0, so that the key does not depend on how spaces and
+  periods are weighed by the collation of the database. Decimals and cutters
+  already sort as strings once case and spacing are the same; the periods in front
+  of cutters are dropped. Anything else is only normalized.
+  The suffix follows the number; the prefix comes last, as it names a location
+  rather than a position on the shelf.
+*/
+public class ShelvingOrder {
+
+  private static final Pattern LC = Pattern.compile("^([A-Z]{1,3}) ?(\\d+)(\\.\\d+)?(.*)$");
+  private static final Pattern DEWEY = Pattern.compile("^(\\d{1,3})(\\.\\d+)?(.*)$");
+  private static final Pattern CUTTER = Pattern.compile("\\.(?=[A-Z])");
+
+  private ShelvingOrder() {
+  }
+
+  /* The key of the call number made of the parts, or null if there is no number */
+  public static String key(String prefix, String number, String suffix) {
+    if (number == null || number.isBlank()) {
+      return null;
+    }
+    StringBuilder key = new StringBuilder(numberKey(normalize(number)));
+    if (suffix != null && !suffix.isBlank()) {
+      key.append(' ').append(normalize(suffix));
+    }
+    if (prefix != null && !prefix.isBlank()) {
+      key.append(' ').append(normalize(prefix));
+    }
+    return key.toString();
+  }
+
+  private static String numberKey(String number) {
+    Matcher lc = LC.matcher(number);
+    if (lc.matches()) {
+      return String.format("%-3s", lc.group(1)) + pad(lc.group(2), 5) + decimal(lc.group(3))
+          + rest(lc.group(4));
+    }
+    Matcher dewey = DEWEY.matcher(number);
+    if (dewey.matches()) {
+      return pad(dewey.group(1), 3) + decimal(dewey.group(2)) + rest(dewey.group(3));
+    }
+    return number;
+  }
+
+  private static String rest(String rest) {
+    String cutters = CUTTER.matcher(rest).replaceAll(" ").trim().replaceAll(" +", " ");
+    return cutters.isEmpty() ? "" : " " + cutters;
+  }
+
+  private static String decimal(String decimal) {
+    return decimal == null ? ".0" : decimal;
+  }
+
+  private static String pad(String digits, int width) {
+    String trimmed = digits.replaceFirst("^0+(?=\\d)", "");
+    StringBuilder padded = new StringBuilder();
+    for (int i = trimmed.length(); i < width; i++) {
+      padded.append('0');
+    }
+    return padded.append(trimmed).toString();
+  }
+
+  private static String normalize(String value) {
+    return value.trim().replaceAll("\\s+", " ").toUpperCase(Locale.ROOT);
+  }
+}
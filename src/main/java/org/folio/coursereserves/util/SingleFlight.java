@@ -0,0 +1,67 @@
+package org.folio.coursereserves.util;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/*
+  Coalesces concurrent operations with the same key: while an operation is
+  outstanding, later callers get its future instead of starting their own.
+  Entries are removed as soon as the operation completes, so results are never
+  reused afterwards. Callers joining from another Vert.x context are called back
+  on their own context.
+*/
+public class SingleFlight<K, V> {
+
+  private final ConcurrentHashMap<K, Future<V>> inFlight = new ConcurrentHashMap<>();
+  private final AtomicLong coalesced = new AtomicLong();
+
+  public Future<V> execute(K key, Supplier<Future<V>> operation) {
+    Promise<V> promise = Promise.promise();
+    Future<V> future = promise.future();
+    Future<V> existing = inFlight.putIfAbsent(key, future);
+    if (existing != null) {
+      coalesced.incrementAndGet();
+      return onCurrentContext(existing);
+    }
+    Future<V> operationFuture;
+    try {
+      operationFuture = operation.get();
+    } catch (Exception e) {
+      operationFuture = Future.failedFuture(e);
+    }
+    operationFuture.onComplete(ar -> {
+      inFlight.remove(key, future);
+      promise.handle(ar);
+    });
+    return future;
+  }
+
+  public int inFlightCount() {
+    return inFlight.size();
+  }
+
+  public long getCoalescedCount() {
+    return coalesced.get();
+  }
+
+  private static <V> Future<V> onCurrentContext(Future<V> future) {
+    Context context = Vertx.currentContext();
+    if (context == null) {
+      return future;
+    }
+    Promise<V> promise = Promise.promise();
+    future.onComplete(ar -> {
+      if (Vertx.currentContext() == context) {
+        promise.handle(ar);
+      } else {
+        context.runOnContext(v -> promise.handle(ar));
+      }
+    });
+    return promise.future();
+  }
+}
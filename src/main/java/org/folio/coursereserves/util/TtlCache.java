@@ -0,0 +1,124 @@
+package org.folio.coursereserves.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/*
+  A size bounded, least-recently-used cache whose entries expire a fixed time
+  after they were stored. A maxSize or ttl of zero disables the cache.
+  All operations are synchronized, so a single instance can be shared between
+  verticles and event loops.
+*/
+public class TtlCache<K, V> {
+
+  private static class Entry<V> {
+    private final V value;
+    private final long expires;
+
+    Entry(V value, long expires) {
+      this.value = value;
+      this.expires = expires;
+    }
+  }
+
+  private final int maxSize;
+  private final long ttlMillis;
+  private final LongSupplier clock;
+  private final LinkedHashMap<K, Entry<V>> entries;
+  private long hits = 0;
+  private long misses = 0;
+  private long evictions = 0;
+
+  public TtlCache(int maxSize, long ttlMillis) {
+    this(maxSize, ttlMillis, System::currentTimeMillis);
+  }
+
+  TtlCache(int maxSize, long ttlMillis, LongSupplier clock) {
+    this.maxSize = Math.max(0, maxSize);
+    this.ttlMillis = Math.max(0, ttlMillis);
+    this.clock = clock;
+    this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+        if (size() > TtlCache.this.maxSize) {
+          evictions++;
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  public boolean isEnabled() {
+    return maxSize > 0 && ttlMillis > 0;
+  }
+
+  /*
+    Return the cached value, or null if there is none or it has expired
+  */
+  public synchronized V get(K key) {
+    Entry<V> entry = entries.get(key);
+    if (entry == null) {
+      misses++;
+      return null;
+    }
+    if (entry.expires <= clock.getAsLong()) {
+      entries.remove(key);
+      misses++;
+      return null;
+    }
+    hits++;
+    return entry.value;
+  }
+
+  public synchronized void put(K key, V value) {
+    if (!isEnabled() || key == null || value == null) {
+      return;
+    }
+    entries.put(key, new Entry<>(value, clock.getAsLong() + ttlMillis));
+  }
+
+  public synchronized void invalidate(K key) {
+    entries.remove(key);
+  }
+
+  public synchronized void invalidateIf(Predicate<K> predicate) {
+    Iterator<K> iterator = entries.keySet().iterator();
+    while (iterator.hasNext()) {
+      if (predicate.test(iterator.next())) {
+        iterator.remove();
+      }
+    }
+  }
+
+  public synchronized void clear() {
+    entries.clear();
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  public synchronized long getEvictions() {
+    return evictions;
+  }
+
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  public long getTtlMillis() {
+    return ttlMillis;
+  }
+}
@@ -1,9 +1,14 @@
 package org.folio.coursereserves.util;
 
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import org.apache.logging.log4j.Logger;
 import org.folio.util.StringUtil;
 
 public class Util {
+  private static final Pattern SORTBY = Pattern.compile("\\bsortby\\b", Pattern.CASE_INSENSITIVE);
+  private static final Pattern CALL_NUMBER_SORT = Pattern.compile("\\bcopiedItem\\.callNumber\\b");
+
   public static String logAndSaveError(Throwable err, Logger logger) {
     String message = err.getMessage();
     logger.error(message, err);
@@ -26,4 +31,48 @@ public class Util {
       return courseQueryClause + " AND " + userQuery;
     }
   }
+
+  /**
+   * Sort reserves by the shelf order key of their call number instead of its text.
+   * @param query CQL query of reserves; null for no query
+   * @return query with copiedItem.callNumber in its sortby clause replaced by
+   *     copiedItem.shelvingOrder
+   */
+  public static String sortByShelvingOrder(String query) {
+    if (query == null) {
+      return null;
+    }
+    Matcher matcher = SORTBY.matcher(query);
+    int sortStart = -1;
+    while (matcher.find()) {
+      sortStart = matcher.end();
+    }
+    if (sortStart < 0) {
+      return query;
+    }
+    return query.substring(0, sortStart)
+        + CALL_NUMBER_SORT.matcher(query.substring(sortStart)).replaceAll("copiedItem.shelvingOrder");
+  }
+
+  /**
+   * Read an integer setting from a system property, falling back to the environment
+   * variable of the same name in upper case with dots replaced by underscores.
+   * @param property name of the system property, such as courses.cache.size
+   * @param defaultValue value to use when the setting is absent or malformed
+   * @return the configured value
+   */
+  public static long getLongConfig(String property, long defaultValue) {
+    String value = System.getProperty(property);
+    if (value == null) {
+      value = System.getenv(property.toUpperCase().replace('.', '_'));
+    }
+    if (value == null || value.isBlank()) {
+      return defaultValue;
+    }
+    try {
+      return Long.parseLong(value.trim());
+    } catch (NumberFormatException e) {
+      return defaultValue;
+    }
+  }
 }
@@ -1,44 +1,66 @@
 package org.folio.rest.impl;
 
 import io.vertx.core.AsyncResult;
+import io.vertx.core.CompositeFuture;
 import io.vertx.core.Context;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
-import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
 import javax.ws.rs.core.Response;
 
 import io.vertx.sqlclient.Row;
 import io.vertx.sqlclient.RowSet;
+import io.vertx.sqlclient.Tuple;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.folio.coursereserves.util.CRUtil;
+import org.folio.coursereserves.util.CollectionWriter;
+import org.folio.coursereserves.util.FanOut;
+import org.folio.coursereserves.util.InvalidationBus;
+import org.folio.coursereserves.util.OkapiClient;
+import org.folio.coursereserves.util.PageCursor;
+import org.folio.coursereserves.util.ScrubPlan;
+import org.folio.coursereserves.util.Util;
 import org.folio.coursereserves.util.WrapString;
 import org.folio.cql2pgjson.CQL2PgJSON;
 import org.folio.cql2pgjson.exception.FieldException;
+import org.folio.cql2pgjson.exception.QueryValidationException;
 import org.folio.okapi.common.GenericCompositeFuture;
 import org.folio.rest.RestVerticle;
+import org.folio.rest.jaxrs.model.CacheStatistic;
+import org.folio.rest.jaxrs.model.CacheStatistics;
 import org.folio.rest.jaxrs.model.CopyrightStatus;
 import org.folio.rest.jaxrs.model.CopyrightStatuses;
+import org.folio.rest.jaxrs.model.CopyrightTracking;
 import org.folio.rest.jaxrs.model.Course;
 import org.folio.rest.jaxrs.model.CourseListing;
-import org.folio.rest.jaxrs.model.CourseListings;
-import org.folio.rest.jaxrs.model.Courses;
 import org.folio.rest.jaxrs.model.CourseType;
 import org.folio.rest.jaxrs.model.CourseTypes;
 import org.folio.rest.jaxrs.model.Department;
 import org.folio.rest.jaxrs.model.Departments;
 import org.folio.rest.jaxrs.model.Instructor;
-import org.folio.rest.jaxrs.model.Instructors;
 import org.folio.rest.jaxrs.model.PatronGroupObject;
 import org.folio.rest.jaxrs.model.ProcessingStatus;
 import org.folio.rest.jaxrs.model.ProcessingStatuses;
 import org.folio.rest.jaxrs.model.Reserve;
+import org.folio.rest.jaxrs.model.ReserveBatch;
+import org.folio.rest.jaxrs.model.ReserveBatchEntry;
+import org.folio.rest.jaxrs.model.ReserveBatchItemResult;
+import org.folio.rest.jaxrs.model.ReserveBatchResults;
 import org.folio.rest.jaxrs.model.Reserves;
+import org.folio.rest.jaxrs.model.ReserveTypeahead;
+import org.folio.rest.jaxrs.model.ReserveTypeaheadItem;
 import org.folio.rest.jaxrs.model.Role;
 import org.folio.rest.jaxrs.model.Roles;
 import org.folio.rest.jaxrs.model.Term;
@@ -51,12 +73,12 @@ import org.folio.rest.persist.Criteria.Offset;
 import org.folio.rest.persist.PgUtil;
 
 import static org.folio.coursereserves.util.Util.queryCourseListing;
-import static org.folio.rest.persist.PgUtil.postgresClient;
 import org.folio.rest.persist.PostgresClient;
 import org.folio.rest.persist.cql.CQLWrapper;
 import org.folio.rest.persist.interfaces.Results;
 import org.folio.rest.tools.utils.TenantTool;
 import org.folio.rest.tools.utils.ValidationHelper;
+import org.folio.util.StringUtil;
 
 public class CourseAPI implements org.folio.rest.jaxrs.resource.Coursereserves {
 
@@ -83,6 +105,11 @@ public class CourseAPI implements org.folio.rest.jaxrs.resource.Coursereserves {
   public static final String DEPARTMENTS_PREFIX = "/departments";
   public static final String ROLES_PREFIX = "/roles";
   public static final String ID_FIELD = "'id'";
+  public static final String TOTAL_RECORDS_EXACT = "exact";
+  public static final String TOTAL_RECORDS_ESTIMATED = "estimated";
+  public static final String TOTAL_RECORDS_NONE = "none";
+  public static final int STREAM_CHUNK_SIZE =
+      (int) Util.getLongConfig("courses.stream.chunk", 100);
 
   private static boolean SUPPRESS_ERRORS = false;
 
@@ -98,6 +125,11 @@ public class CourseAPI implements org.folio.rest.jaxrs.resource.Coursereserves {
     scrubMap = mapInit;
   }
 
+  private static final Map<Class, ScrubPlan> scrubPlans = new HashMap<>();
+  static {
+    scrubMap.forEach((clazz, fields) -> scrubPlans.put(clazz, ScrubPlan.of(clazz, fields)));
+  }
+
   enum WriteType {
     POST, PUT
   }
@@ -131,17 +163,46 @@ public class CourseAPI implements org.folio.rest.jaxrs.resource.Coursereserves {
     return TenantTool.calculateTenantId(headers.get(RestVerticle.OKAPI_HEADER_TENANT));
   }
 
+  /*
+    Wrap the handler of a write to a reference data table so that, once the write has
+    completed, the cached record is dropped here and on the other instances. A null id
+    stands for all records of the table.
+  */
+  private Handler<AsyncResult<Response>> invalidateReferenceData(String table, String id,
+      Map<String, String> okapiHeaders, Context vertxContext,
+      Handler<AsyncResult<Response>> asyncResultHandler) {
+    String tenantId = getTenant(okapiHeaders);
+    return res -> {
+      CRUtil.REFERENCE_DATA_CACHE.invalidate(tenantId, table, id);
+      InvalidationBus.publish(vertxContext.owner(), tenantId, table, id);
+      asyncResultHandler.handle(res);
+    };
+  }
+
   public static CQLWrapper getCQL(String query, int limit, int offset, String tableName) throws FieldException {
     CQL2PgJSON cql2pgJson = new CQL2PgJSON(tableName + ".jsonb");
     return new CQLWrapper(cql2pgJson, query).setLimit(new Limit(limit)).setOffset(new Offset(offset));
   }
 
+  /* Name part of the unique index declared in schema.json */
+  protected static final String RESERVE_ITEM_UNIQUE_INDEX = "courselistingid_itemid";
+
   protected static boolean isDuplicate(String errorMessage) {
     return errorMessage != null && errorMessage.contains("duplicate key value violates unique constraint");
   }
 
+  /*
+    Whether err comes from a query that cannot be parsed or translated, as the
+    CQLQueryValidationException that CQLWrapper wraps around these
+  */
   protected static boolean isCQLError(Throwable err) {
-    return err.getCause() != null && err.getCause().getClass().getSimpleName().endsWith("CQLParseException");
+    for (Throwable e = err; e != null; e = e.getCause()) {
+      if (e instanceof QueryValidationException
+          || e.getClass().getSimpleName().endsWith("CQLParseException")) {
+        return true;
+      }
+    }
+    return false;
   }
 
   public static List<Reserf> reserfListFromReserveList(List<Reserve> reserveList) {
@@ -155,11 +216,15 @@ public class CourseAPI implements org.folio.rest.jaxrs.resource.Coursereserves {
   }
 
   @Override
-  public void getCoursereservesCourselistings(String query, int offset, int limit, String lang,
-      Map<String, String> okapiHeaders, Handler<AsyncResult<Response>> asyncResultHandler, Context vertxContext) {
+  public void getCoursereservesCourselistings(String totalRecords, String query, int offset, int limit,
+      String lang, Map<String, String> okapiHeaders, Handler<AsyncResult<Response>> asyncResultHandler,
+      Context vertxContext) {
 
-    PgUtil.get(COURSE_LISTINGS_TABLE, CourseListing.class, CourseListings.class, query, offset, limit, okapiHeaders,
-        vertxContext, GetCoursereservesCourselistingsResponse.class, asyncResultHandler);
+    getRawCollection(COURSE_LISTINGS_TABLE, "courseListings", query, offset, limit, null, totalRecords,
+        okapiHeaders, vertxContext)
+        .otherwise(e -> rawCollectionError(e, GetCoursereservesCourselistingsResponse::respond400WithTextPlain,
+            GetCoursereservesCourselistingsResponse::respond500WithTextPlain))
+        .onComplete(asyncResultHandler);
   }
 
   @Override
@@ -181,7 +246,8 @@ public class CourseAPI implements org.folio.rest.jaxrs.resource.Coursereserves {
   @Override
   public void getCoursereservesCourselistingsByListingId(String listingId, String lang,
       Map<String, String> okapiHeaders, Handler<AsyncResult<Response>> asyncResultHandler, Context vertxContext) {
-    CRUtil.lookupExpandedCourseListing(listingId, okapiHeaders, vertxContext).onComplete(res -> {
+    CRUtil.lookupExpandedCourseListing(listingId, okapiHeaders, vertxContext,
+        new OkapiClient(vertxContext.owner(), okapiHeaders)).onComplete(res -> {
       if (res.failed()) {
         String message = logAndSaveError(res.cause());
         asyncResultHandler.handle(Future.succeededFuture(
@@ -226,12 +292,15 @@ public class CourseAPI implements org.folio.rest.jaxrs.resource.Coursereserves {
   }
 
   @Override
-  public void getCoursereservesCourselistingsCoursesByListingId(String listingId, String query, int offset, int limit,
-      String lang, Map<String, String> okapiHeaders, Handler<AsyncResult<Response>> asyncResultHandler,
-      Context vertxContext) {
-    PgUtil.get(COURSES_TABLE, Course.class, Courses.class, queryCourseListing(query, listingId),
-        offset, limit, okapiHeaders, vertxContext,
-        GetCoursereservesCourselistingsCoursesByListingIdResponse.class, asyncResultHandler);
+  public void getCoursereservesCourselistingsCoursesByListingId(String listingId, String totalRecords, String query,
+      int offset, int limit, String lang, Map<String, String> okapiHeaders,
+      Handler<AsyncResult<Response>> asyncResultHandler, Context vertxContext) {
+    getRawCollection(COURSES_TABLE, "courses", queryCourseListing(query, listingId), offset, limit, null,
+        totalRecords, okapiHeaders, vertxContext)
+        .otherwise(e -> rawCollectionError(e,
+            GetCoursereservesCourselistingsCoursesByListingIdResponse::respond400WithTextPlain,
+            GetCoursereservesCourselistingsCoursesByListingIdResponse::respond500WithTextPlain))
+        .onComplete(asyncResultHandler);
   }
 
   @Override
@@ -281,12 +350,15 @@ public class CourseAPI implements org.folio.rest.jaxrs.resource.Coursereserves {
   }
 
   @Override
-  public void getCoursereservesCourselistingsInstructorsByListingId(String listingId, String query, int offset,
-      int limit, String lang, Map<String, String> okapiHeaders, Handler<AsyncResult<Response>> asyncResultHandler,
-      Context vertxContext) {
-    PgUtil.get(INSTRUCTORS_TABLE, Instructor.class, Instructors.class, queryCourseListing(query, listingId),
-        offset, limit, okapiHeaders, vertxContext,
-        GetCoursereservesCourselistingsInstructorsByListingIdResponse.class, asyncResultHandler);
+  public void getCoursereservesCourselistingsInstructorsByListingId(String listingId, String totalRecords,
+      String query, int offset, int limit, String lang, Map<String, String> okapiHeaders,
+      Handler<AsyncResult<Response>> asyncResultHandler, Context vertxContext) {
+    getRawCollection(INSTRUCTORS_TABLE, "instructors", queryCourseListing(query, listingId), offset, limit,
+        null, totalRecords, okapiHeaders, vertxContext)
+        .otherwise(e -> rawCollectionError(e,
+            GetCoursereservesCourselistingsInstructorsByListingIdResponse::respond400WithTextPlain,
+            GetCoursereservesCourselistingsInstructorsByListingIdResponse::respond500WithTextPlain))
+        .onComplete(asyncResultHandler);
   }
 
   @Override
@@ -301,7 +373,8 @@ public class CourseAPI implements org.folio.rest.jaxrs.resource.Coursereserves {
       Future<JsonObject> getUserAndGroupFuture;
       if (entity.getUserId() != null) {
         logger.info("Looking up patrongroup for user with id {}", entity.getUserId());
-        getUserAndGroupFuture = CRUtil.lookupUserAndGroupByUserId(entity.getUserId(), okapiHeaders, vertxContext);
+        getUserAndGroupFuture = CRUtil.lookupUserAndGroupByUserId(entity.getUserId(),
+            new OkapiClient(vertxContext.owner(), okapiHeaders));
       } else {
         String message = "No user id to look up patrongroup";
         logger.info(message);
@@ -421,10 +494,10 @@ public class CourseAPI implements org.folio.rest.jaxrs.resource.Coursereserves {
   }
 
   @Override
-  public void getCoursereservesCourselistingsReservesByListingId(String listingId, String expand, String query,
-      int offset, int limit, String lang, Map<String, String> okapiHeaders,
+  public void getCoursereservesCourselistingsReservesByListingId(String listingId, String expand,
+      String totalRecords, String query, int offset, int limit, String lang, Map<String, String> okapiHeaders,
       Handler<AsyncResult<Response>> asyncResultHandler, Context vertxContext) {
-    handleGetReserves(expand, queryCourseListing(query, listingId),
+    handleGetReserves(expand, null, totalRecords, queryCourseListing(query, listingId),
         offset, limit, okapiHeaders, asyncResultHandler, vertxContext);
   }
 
@@ -441,6 +514,92 @@ public class CourseAPI implements org.folio.rest.jaxrs.resource.Coursereserves {
     handleWriteReserves(listingId, entity, okapiHeaders, asyncResultHandler, vertxContext, WriteType.POST);
   }
 
+  @Override
+  public void postCoursereservesCourselistingsReservesBatchByListingId(String listingId,
+      ReserveBatch entity, Map<String, String> okapiHeaders,
+      Handler<AsyncResult<Response>> asyncResultHandler, Context vertxContext) {
+    try {
+      OkapiClient okapiClient = new OkapiClient(vertxContext.owner(), okapiHeaders);
+      List<ReserveBatchItemResult> results = new ArrayList<>();
+      Set<String> itemIds = new LinkedHashSet<>();
+      Set<String> barcodes = new LinkedHashSet<>();
+      for (ReserveBatchEntry entry : entity.getReserveBatchEntries()) {
+        ReserveBatchItemResult result = new ReserveBatchItemResult()
+            .withItemId(entry.getItemId())
+            .withBarcode(entry.getBarcode());
+        results.add(result);
+        if (entry.getBarcode() != null) {
+          barcodes.add(entry.getBarcode());
+        } else if (entry.getItemId() != null) {
+          itemIds.add(entry.getItemId());
+        } else {
+          failBatchEntry(result, "Must provide item id or item barcode");
+        }
+      }
+      /*
+        The course listing and all items with their holdings and instances are read
+        concurrently, the inventory records in a few batched queries instead of three
+        requests per item.
+      */
+      Future<CourseListing> courseListingFuture = CRUtil.getCourseListingById(listingId,
+          okapiHeaders, vertxContext);
+      Future<List<JsonObject>> inventoryFuture = CRUtil.lookupItemHoldingsInstances(itemIds,
+          barcodes, okapiHeaders, okapiClient);
+      CompositeFuture.all(courseListingFuture, inventoryFuture).onComplete(lookupRes -> {
+        if (lookupRes.failed()) {
+          String message = logAndSaveError(lookupRes.cause());
+          asyncResultHandler.handle(Future.succeededFuture(
+              PostCoursereservesCourselistingsReservesBatchByListingIdResponse
+                  .respond500WithTextPlain(getErrorResponse(message))));
+          return;
+        }
+        if (courseListingFuture.result() == null) {
+          asyncResultHandler.handle(Future.succeededFuture(
+              PostCoursereservesCourselistingsReservesBatchByListingIdResponse
+                  .respond404WithTextPlain("No course listing found for id " + listingId)));
+          return;
+        }
+        CourseListing courseListing = courseListingFuture.result();
+        List<BatchReserve> pending = buildBatchReserves(listingId, entity, courseListing,
+            inventoryFuture.result(), results);
+        boolean updateItems = courseListing.getLocationId() != null
+            || entity.getTemporaryLocationId() != null || entity.getTemporaryLoanTypeId() != null;
+        checkBatchReservesUnique(listingId, pending, okapiHeaders, vertxContext)
+            .compose(x -> saveBatchReserves(listingId, pending, okapiHeaders, vertxContext))
+            .compose(x -> updateItems
+                ? putBatchItemUpdates(pending, okapiHeaders, vertxContext, okapiClient)
+                : Future.succeededFuture())
+            .onSuccess(x -> {
+              int created = 0;
+              for (ReserveBatchItemResult result : results) {
+                if (result.getStatus() == ReserveBatchItemResult.Status.CREATED) {
+                  created++;
+                }
+              }
+              ReserveBatchResults batchResults = new ReserveBatchResults()
+                  .withReserveBatchItemResults(results)
+                  .withCreatedRecords(created)
+                  .withFailedRecords(results.size() - created)
+                  .withTotalRecords(results.size());
+              asyncResultHandler.handle(Future.succeededFuture(
+                  PostCoursereservesCourselistingsReservesBatchByListingIdResponse
+                      .respond201WithApplicationJson(batchResults)));
+            })
+            .onFailure(e -> {
+              String message = logAndSaveError(e);
+              asyncResultHandler.handle(Future.succeededFuture(
+                  PostCoursereservesCourselistingsReservesBatchByListingIdResponse
+                      .respond500WithTextPlain(getErrorResponse(message))));
+            });
+      });
+    } catch (Exception e) {
+      String message = logAndSaveError(e);
+      asyncResultHandler.handle(Future.succeededFuture(
+          PostCoursereservesCourselistingsReservesBatchByListingIdResponse
+              .respond500WithTextPlain(getErrorResponse(message))));
+    }
+  }
+
   public void deleteCoursereservesCourselistingsReservesByListingId(String listingId, Map<String, String> okapiHeaders,
       Handler<AsyncResult<Response>> asyncResultHandler, Context vertxContext) {
 
@@ -454,7 +613,8 @@ public class CourseAPI implements org.folio.rest.jaxrs.resource.Coursereserves {
       Context vertxContext) {
 
     try {
-      CRUtil.lookupExpandedReserve(reserveId, okapiHeaders, vertxContext).onComplete(res -> {
+      CRUtil.lookupExpandedReserve(reserveId, okapiHeaders, vertxContext,
+          new OkapiClient(vertxContext.owner(), okapiHeaders)).onComplete(res -> {
         if (res.failed()) {
           String message = logAndSaveError(res.cause());
           asyncResultHandler
@@ -548,7 +708,8 @@ public class CourseAPI implements org.folio.rest.jaxrs.resource.Coursereserves {
   public void postCoursereservesTerms(String lang, Term entity, Map<String, String> okapiHeaders,
       Handler<AsyncResult<Response>> asyncResultHandler, Context vertxContext) {
     PgUtil.post(TERMS_TABLE, entity, okapiHeaders, vertxContext, PostCoursereservesTermsResponse.class,
-        asyncResultHandler);
+        invalidateReferenceData(TERMS_TABLE, entity.getId(), okapiHeaders,
+            vertxContext, asyncResultHandler));
   }
 
   @Override
@@ -560,6 +721,8 @@ public class CourseAPI implements org.folio.rest.jaxrs.resource.Coursereserves {
       final String DELETE_ALL_QUERY = String.format("DELETE FROM %s_%s.%s", tenantId, "mod_courses", TERMS_TABLE);
       logger.info("Deleting all terms with query {}", DELETE_ALL_QUERY);
       pgClient.execute(DELETE_ALL_QUERY, mutateReply -> {
+        CRUtil.REFERENCE_DATA_CACHE.invalidate(tenantId, TERMS_TABLE);
+        InvalidationBus.publish(vertxContext.owner(), tenantId, TERMS_TABLE, null);
         if (mutateReply.failed()) {
           String message = logAndSaveError(mutateReply.cause());
           asyncResultHandler.handle(Future
@@ -586,14 +749,16 @@ public class CourseAPI implements org.folio.rest.jaxrs.resource.Coursereserves {
   public void putCoursereservesTermsByTermId(String termId, String lang, Term entity, Map<String, String> okapiHeaders,
       Handler<AsyncResult<Response>> asyncResultHandler, Context vertxContext) {
     PgUtil.put(TERMS_TABLE, entity, termId, okapiHeaders, vertxContext, PutCoursereservesTermsByTermIdResponse.class,
-        asyncResultHandler);
+        invalidateReferenceData(TERMS_TABLE, termId, okapiHeaders,
+            vertxContext, asyncResultHandler));
   }
 
   @Override
   public void deleteCoursereservesTermsByTermId(String termId, String lang, Map<String, String> okapiHeaders,
       Handler<AsyncResult<Response>> asyncResultHandler, Context vertxContext) {
     PgUtil.deleteById(TERMS_TABLE, termId, okapiHeaders, vertxContext, DeleteCoursereservesTermsByTermIdResponse.class,
-        asyncResultHandler);
+        invalidateReferenceData(TERMS_TABLE, termId, okapiHeaders,
+            vertxContext, asyncResultHandler));
   }
 
   @Override
@@ -607,7 +772,8 @@ public class CourseAPI implements org.folio.rest.jaxrs.resource.Coursereserves {
   public void postCoursereservesCoursetypes(String lang, CourseType entity, Map<String, String> okapiHeaders,
       Handler<AsyncResult<Response>> asyncResultHandler, Context vertxContext) {
     PgUtil.post(COURSE_TYPES_TABLE, entity, okapiHeaders, vertxContext, PostCoursereservesCoursetypesResponse.class,
-        asyncResultHandler);
+        invalidateReferenceData(COURSE_TYPES_TABLE, entity.getId(), okapiHeaders,
+            vertxContext, asyncResultHandler));
   }
 
   @Override
@@ -620,6 +786,8 @@ public class CourseAPI implements org.folio.rest.jaxrs.resource.Coursereserves {
           COURSE_TYPES_TABLE);
       logger.info("Deleting all courses types with query {}", DELETE_ALL_QUERY);
       pgClient.execute(DELETE_ALL_QUERY, mutateReply -> {
+        CRUtil.REFERENCE_DATA_CACHE.invalidate(tenantId, COURSE_TYPES_TABLE);
+        InvalidationBus.publish(vertxContext.owner(), tenantId, COURSE_TYPES_TABLE, null);
         if (mutateReply.failed()) {
           String message = logAndSaveError(mutateReply.cause());
           asyncResultHandler.handle(Future.succeededFuture(
@@ -647,14 +815,18 @@ public class CourseAPI implements org.folio.rest.jaxrs.resource.Coursereserves {
   public void putCoursereservesCoursetypesByTypeId(String typeId, String lang, CourseType entity,
       Map<String, String> okapiHeaders, Handler<AsyncResult<Response>> asyncResultHandler, Context vertxContext) {
     PgUtil.put(COURSE_TYPES_TABLE, entity, typeId, okapiHeaders, vertxContext,
-        PutCoursereservesCoursetypesByTypeIdResponse.class, asyncResultHandler);
+        PutCoursereservesCoursetypesByTypeIdResponse.class,
+        invalidateReferenceData(COURSE_TYPES_TABLE, typeId, okapiHeaders,
+            vertxContext, asyncResultHandler));
   }
 
   @Override
   public void deleteCoursereservesCoursetypesByTypeId(String typeId, String lang, Map<String, String> okapiHeaders,
       Handler<AsyncResult<Response>> asyncResultHandler, Context vertxContext) {
     PgUtil.deleteById(COURSE_TYPES_TABLE, typeId, okapiHeaders, vertxContext,
-        DeleteCoursereservesCoursetypesByTypeIdResponse.class, asyncResultHandler);
+        DeleteCoursereservesCoursetypesByTypeIdResponse.class,
+        invalidateReferenceData(COURSE_TYPES_TABLE, typeId, okapiHeaders,
+            vertxContext, asyncResultHandler));
   }
 
   @Override
@@ -668,7 +840,8 @@ public class CourseAPI implements org.folio.rest.jaxrs.resource.Coursereserves {
   public void postCoursereservesDepartments(String lang, Department entity, Map<String, String> okapiHeaders,
       Handler<AsyncResult<Response>> asyncResultHandler, Context vertxContext) {
     PgUtil.post(DEPARTMENTS_TABLE, entity, okapiHeaders, vertxContext, PostCoursereservesDepartmentsResponse.class,
-        asyncResultHandler);
+        invalidateReferenceData(DEPARTMENTS_TABLE, entity.getId(), okapiHeaders,
+            vertxContext, asyncResultHandler));
   }
 
   @Override
@@ -680,6 +853,8 @@ public class CourseAPI implements org.folio.rest.jaxrs.resource.Coursereserves {
       final String DELETE_ALL_QUERY = String.format("DELETE FROM %s_%s.%s", tenantId, "mod_courses", DEPARTMENTS_TABLE);
       logger.info("Deleting all courses listings with query {}", DELETE_ALL_QUERY);
       pgClient.execute(DELETE_ALL_QUERY, mutateReply -> {
+        CRUtil.REFERENCE_DATA_CACHE.invalidate(tenantId, DEPARTMENTS_TABLE);
+        InvalidationBus.publish(vertxContext.owner(), tenantId, DEPARTMENTS_TABLE, null);
         if (mutateReply.failed()) {
           String message = logAndSaveError(mutateReply.cause());
           asyncResultHandler.handle(Future.succeededFuture(
@@ -707,14 +882,18 @@ public class CourseAPI implements org.folio.rest.jaxrs.resource.Coursereserves {
   public void putCoursereservesDepartmentsByDepartmentId(String departmentId, String lang, Department entity,
       Map<String, String> okapiHeaders, Handler<AsyncResult<Response>> asyncResultHandler, Context vertxContext) {
     PgUtil.put(DEPARTMENTS_TABLE, entity, departmentId, okapiHeaders, vertxContext,
-        PutCoursereservesDepartmentsByDepartmentIdResponse.class, asyncResultHandler);
+        PutCoursereservesDepartmentsByDepartmentIdResponse.class,
+        invalidateReferenceData(DEPARTMENTS_TABLE, departmentId, okapiHeaders,
+            vertxContext, asyncResultHandler));
   }
 
   @Override
   public void deleteCoursereservesDepartmentsByDepartmentId(String departmentId, String lang,
       Map<String, String> okapiHeaders, Handler<AsyncResult<Response>> asyncResultHandler, Context vertxContext) {
     PgUtil.deleteById(DEPARTMENTS_TABLE, departmentId, okapiHeaders, vertxContext,
-        DeleteCoursereservesDepartmentsByDepartmentIdResponse.class, asyncResultHandler);
+        DeleteCoursereservesDepartmentsByDepartmentIdResponse.class,
+        invalidateReferenceData(DEPARTMENTS_TABLE, departmentId, okapiHeaders,
+            vertxContext, asyncResultHandler));
   }
 
   @Override
@@ -728,7 +907,9 @@ public class CourseAPI implements org.folio.rest.jaxrs.resource.Coursereserves {
   public void postCoursereservesProcessingstatuses(String lang, ProcessingStatus entity,
       Map<String, String> okapiHeaders, Handler<AsyncResult<Response>> asyncResultHandler, Context vertxContext) {
     PgUtil.post(PROCESSING_STATUSES_TABLE, entity, okapiHeaders, vertxContext,
-        PostCoursereservesProcessingstatusesResponse.class, asyncResultHandler);
+        PostCoursereservesProcessingstatusesResponse.class,
+        invalidateReferenceData(PROCESSING_STATUSES_TABLE, entity.getId(), okapiHeaders,
+            vertxContext, asyncResultHandler));
   }
 
   @Override
@@ -741,6 +922,8 @@ public class CourseAPI implements org.folio.rest.jaxrs.resource.Coursereserves {
           PROCESSING_STATUSES_TABLE);
       logger.info("Deleting all processing statuses with query {}", DELETE_ALL_QUERY);
       pgClient.execute(DELETE_ALL_QUERY, mutateReply -> {
+        CRUtil.REFERENCE_DATA_CACHE.invalidate(tenantId, PROCESSING_STATUSES_TABLE);
+        InvalidationBus.publish(vertxContext.owner(), tenantId, PROCESSING_STATUSES_TABLE, null);
         if (mutateReply.failed()) {
           String message = logAndSaveError(mutateReply.cause());
           asyncResultHandler.handle(Future.succeededFuture(
@@ -768,14 +951,18 @@ public class CourseAPI implements org.folio.rest.jaxrs.resource.Coursereserves {
   public void putCoursereservesProcessingstatusesByStatusId(String statusId, String lang, ProcessingStatus entity,
       Map<String, String> okapiHeaders, Handler<AsyncResult<Response>> asyncResultHandler, Context vertxContext) {
     PgUtil.put(PROCESSING_STATUSES_TABLE, entity, statusId, okapiHeaders, vertxContext,
-        PutCoursereservesProcessingstatusesByStatusIdResponse.class, asyncResultHandler);
+        PutCoursereservesProcessingstatusesByStatusIdResponse.class,
+        invalidateReferenceData(PROCESSING_STATUSES_TABLE, statusId, okapiHeaders,
+            vertxContext, asyncResultHandler));
   }
 
   @Override
   public void deleteCoursereservesProcessingstatusesByStatusId(String statusId, String lang,
       Map<String, String> okapiHeaders, Handler<AsyncResult<Response>> asyncResultHandler, Context vertxContext) {
     PgUtil.deleteById(PROCESSING_STATUSES_TABLE, statusId, okapiHeaders, vertxContext,
-        DeleteCoursereservesProcessingstatusesByStatusIdResponse.class, asyncResultHandler);
+        DeleteCoursereservesProcessingstatusesByStatusIdResponse.class,
+        invalidateReferenceData(PROCESSING_STATUSES_TABLE, statusId, okapiHeaders,
+            vertxContext, asyncResultHandler));
   }
 
   @Override
@@ -789,7 +976,9 @@ public class CourseAPI implements org.folio.rest.jaxrs.resource.Coursereserves {
   public void postCoursereservesCopyrightstatuses(String lang, CopyrightStatus entity, Map<String, String> okapiHeaders,
       Handler<AsyncResult<Response>> asyncResultHandler, Context vertxContext) {
     PgUtil.post(COPYRIGHT_STATUSES_TABLE, entity, okapiHeaders, vertxContext,
-        PostCoursereservesCopyrightstatusesResponse.class, asyncResultHandler);
+        PostCoursereservesCopyrightstatusesResponse.class,
+        invalidateReferenceData(COPYRIGHT_STATUSES_TABLE, entity.getId(), okapiHeaders,
+            vertxContext, asyncResultHandler));
   }
 
   @Override
@@ -802,6 +991,8 @@ public class CourseAPI implements org.folio.rest.jaxrs.resource.Coursereserves {
           COPYRIGHT_STATUSES_TABLE);
       logger.info("Deleting all copyright statuses with query {}", DELETE_ALL_QUERY);
       pgClient.execute(DELETE_ALL_QUERY, mutateReply -> {
+        CRUtil.REFERENCE_DATA_CACHE.invalidate(tenantId, COPYRIGHT_STATUSES_TABLE);
+        InvalidationBus.publish(vertxContext.owner(), tenantId, COPYRIGHT_STATUSES_TABLE, null);
         if (mutateReply.failed()) {
           String message = logAndSaveError(mutateReply.cause());
           asyncResultHandler.handle(Future.succeededFuture(
@@ -829,54 +1020,97 @@ public class CourseAPI implements org.folio.rest.jaxrs.resource.Coursereserves {
   public void putCoursereservesCopyrightstatusesByStatusId(String statusId, String lang, CopyrightStatus entity,
       Map<String, String> okapiHeaders, Handler<AsyncResult<Response>> asyncResultHandler, Context vertxContext) {
     PgUtil.put(COPYRIGHT_STATUSES_TABLE, entity, statusId, okapiHeaders, vertxContext,
-        PutCoursereservesCopyrightstatusesByStatusIdResponse.class, asyncResultHandler);
+        PutCoursereservesCopyrightstatusesByStatusIdResponse.class,
+        invalidateReferenceData(COPYRIGHT_STATUSES_TABLE, statusId, okapiHeaders,
+            vertxContext, asyncResultHandler));
   }
 
   @Override
   public void deleteCoursereservesCopyrightstatusesByStatusId(String statusId, String lang,
       Map<String, String> okapiHeaders, Handler<AsyncResult<Response>> asyncResultHandler, Context vertxContext) {
     PgUtil.deleteById(COPYRIGHT_STATUSES_TABLE, statusId, okapiHeaders, vertxContext,
-        DeleteCoursereservesCopyrightstatusesByStatusIdResponse.class, asyncResultHandler);
+        DeleteCoursereservesCopyrightstatusesByStatusIdResponse.class,
+        invalidateReferenceData(COPYRIGHT_STATUSES_TABLE, statusId, okapiHeaders,
+            vertxContext, asyncResultHandler));
   }
 
   @Override
-  public void getCoursereservesCourses(String query, int offset, int limit, String lang,
-      Map<String, String> okapiHeaders, Handler<AsyncResult<Response>> asyncResultHandler, Context vertxContext) {
+  public void getCoursereservesCachestatistics(Map<String, String> okapiHeaders,
+      Handler<AsyncResult<Response>> asyncResultHandler, Context vertxContext) {
     try {
-      CQLWrapper cqlWrapper = getCQL(query, limit, offset, COURSES_TABLE);
-      PostgresClient postgresClient = postgresClient(vertxContext, okapiHeaders);
-      postgresClient.get(COURSES_TABLE, Course.class, cqlWrapper, true, reply -> {
-        if (reply.failed()) {
-          String message = logAndSaveError(reply.cause());
-          asyncResultHandler.handle(Future
-              .succeededFuture(GetCoursereservesCoursesResponse.respond500WithTextPlain(getErrorResponse(message))));
-        } else {
-          List<Course> courseList = reply.result().getResults();
-          CRUtil.expandListOfCourses(courseList, okapiHeaders, vertxContext).onComplete(res -> {
-            if (res.failed()) {
-              String message = logAndSaveError(res.cause());
-              asyncResultHandler.handle(Future.succeededFuture(
-                  GetCoursereservesCoursesResponse.respond500WithTextPlain(getErrorResponse(message))));
-            } else {
-              Courses courses = new Courses();
-              courses.setCourses(res.result());
-              courses.setTotalRecords(reply.result().getResultInfo().getTotalRecords());
-              asyncResultHandler.handle(
-                  Future.succeededFuture(GetCoursereservesCoursesResponse.respond200WithApplicationJson(courses)));
-            }
-          });
-        }
-      });
+      List<CacheStatistic> statisticList = new ArrayList<>();
+      statisticList.add(CRUtil.cacheStatistic("inventory", CRUtil.INVENTORY_CACHE));
+      statisticList.add(CRUtil.cacheStatistic("referenceData",
+          CRUtil.REFERENCE_DATA_CACHE.getCache()));
+      CacheStatistics cacheStatistics = new CacheStatistics()
+          .withCacheStatistics(statisticList)
+          .withTotalRecords(statisticList.size());
+      asyncResultHandler.handle(Future.succeededFuture(
+          GetCoursereservesCachestatisticsResponse.respond200WithApplicationJson(cacheStatistics)));
     } catch (Exception e) {
       String message = logAndSaveError(e);
-      if (isCQLError(e)) {
-        message = String.format("CQL Error: %s", message);
-      }
-      asyncResultHandler.handle(
-          Future.succeededFuture(GetCoursereservesCoursesResponse.respond500WithTextPlain(getErrorResponse(message))));
+      asyncResultHandler.handle(Future.succeededFuture(
+          GetCoursereservesCachestatisticsResponse.respond500WithTextPlain(getErrorResponse(message))));
     }
   }
 
+  /*
+    Reserves whose barcode or call number contains q. The == "*q*" match is answered
+    with the trigram GIN indexes of both fields; only the columns shown while typing
+    are read and nothing is counted.
+  */
+  @Override
+  public void getCoursereservesTypeaheadReserves(String q, int limit, Map<String, String> okapiHeaders,
+      Handler<AsyncResult<Response>> asyncResultHandler, Context vertxContext) {
+    String tenantId = getTenant(okapiHeaders);
+    String schema = PostgresClient.convertToPsqlStandard(tenantId);
+    String sql;
+    try {
+      String encoded = StringUtil.cqlEncode(q);
+      String contains = "\"*" + encoded.substring(1, encoded.length() - 1) + "*\"";
+      String query = "copiedItem.barcode==" + contains + " or copiedItem.callNumber==" + contains;
+      sql = "SELECT id, jsonb->'copiedItem'->>'title', jsonb->'copiedItem'->>'barcode',"
+          + " jsonb->'copiedItem'->>'callNumber' FROM " + schema + "." + RESERVES_TABLE + " "
+          + getCQL(query, limit, 0, RESERVES_TABLE);
+    } catch (Exception e) {
+      asyncResultHandler.handle(Future.succeededFuture(rawCollectionError(e,
+          GetCoursereservesTypeaheadReservesResponse::respond400WithTextPlain,
+          GetCoursereservesTypeaheadReservesResponse::respond500WithTextPlain)));
+      return;
+    }
+    getPGClient(vertxContext, tenantId).select(sql)
+        .map(rows -> {
+          List<ReserveTypeaheadItem> itemList = new ArrayList<>();
+          for (Row row : rows) {
+            itemList.add(new ReserveTypeaheadItem()
+                .withId(row.getValue(0).toString())
+                .withTitle(row.getString(1))
+                .withBarcode(row.getString(2))
+                .withCallNumber(row.getString(3)));
+          }
+          return (Response) GetCoursereservesTypeaheadReservesResponse.respond200WithApplicationJson(
+              new ReserveTypeahead().withReserves(itemList));
+        })
+        .otherwise(e -> rawCollectionError(e,
+            GetCoursereservesTypeaheadReservesResponse::respond400WithTextPlain,
+            GetCoursereservesTypeaheadReservesResponse::respond500WithTextPlain))
+        .onComplete(asyncResultHandler);
+  }
+
+  @Override
+  public void getCoursereservesCourses(String cursor, String totalRecords, String query, int offset,
+      int limit, String lang, Map<String, String> okapiHeaders, Handler<AsyncResult<Response>> asyncResultHandler,
+      Context vertxContext) {
+    OkapiClient okapiClient = new OkapiClient(vertxContext.owner(), okapiHeaders);
+    getCollection(COURSES_TABLE, "courses", Course.class,
+        courseList -> CRUtil.expandListOfCourses(courseList, okapiHeaders, vertxContext, okapiClient),
+        query, offset, limit, cursor, totalRecords, okapiHeaders, vertxContext)
+        .otherwise(e -> rawCollectionError(e, GetCoursereservesCoursesResponse::respond400WithTextPlain,
+            GetCoursereservesCoursesResponse::respond500WithTextPlain))
+        .onComplete(asyncResultHandler);
+  }
+
+
   @Override
   public void postCoursereservesCourses(String lang, Course entity, Map<String, String> okapiHeaders,
       Handler<AsyncResult<Response>> asyncResultHandler, Context vertxContext) {
@@ -928,7 +1162,8 @@ public class CourseAPI implements org.folio.rest.jaxrs.resource.Coursereserves {
                 .respond404WithTextPlain(String.format("No Course exists with id '%s'", courseId))));
           } else {
             Course course = courseList.get(0);
-            CRUtil.getExpandedCourse(course, okapiHeaders, vertxContext).onComplete(expandCourseRes -> {
+            CRUtil.getExpandedCourse(course, okapiHeaders, vertxContext,
+                new OkapiClient(vertxContext.owner(), okapiHeaders)).onComplete(expandCourseRes -> {
               if (expandCourseRes.failed()) {
                 String message = logAndSaveError(expandCourseRes.cause());
                 asyncResultHandler.handle(Future.succeededFuture(
@@ -964,9 +1199,11 @@ public class CourseAPI implements org.folio.rest.jaxrs.resource.Coursereserves {
   }
 
   @Override
-  public void getCoursereservesReserves(String expand, String query, int offset, int limit, String lang,
-      Map<String, String> okapiHeaders, Handler<AsyncResult<Response>> asyncResultHandler, Context vertxContext) {
-    handleGetReserves(expand, query, offset, limit, okapiHeaders, asyncResultHandler, vertxContext);
+  public void getCoursereservesReserves(String expand, String cursor, String totalRecords, String query,
+      int offset, int limit, String lang, Map<String, String> okapiHeaders,
+      Handler<AsyncResult<Response>> asyncResultHandler, Context vertxContext) {
+    handleGetReserves(expand, cursor, totalRecords, query, offset, limit, okapiHeaders, asyncResultHandler,
+        vertxContext);
   }
 
   @Override
@@ -1035,6 +1272,121 @@ public class CourseAPI implements org.folio.rest.jaxrs.resource.Coursereserves {
     return pgClient.get(tableName, clazz, new String[]{"*"}, cql, true);
   }
 
+  /*
+    A page of a collection with the records written into the response body as they
+    are stored in the jsonb column, without deserializing them into POJOs and back.
+    Only for collections whose items need nothing added to the stored record.
+  */
+  public Future<Response> getRawCollection(String tableName, String collectionName, String query,
+      int offset, int limit, String cursor, String totalRecords, Map<String, String> okapiHeaders,
+      Context vertxContext) {
+    return getCollection(tableName, collectionName, Object.class, null, query, offset, limit, cursor,
+        totalRecords, okapiHeaders, vertxContext);
+  }
+
+  /*
+    A page of a collection, by offset or, if cursor is not null, as the records after
+    cursor in the order of id or of the sortby field and id, see PageCursor. Either
+    way totalRecords counts all records matching the query, see countRecords for
+    how. A page of at most STREAM_CHUNK_SIZE records is read with a plain select, a
+    larger one from a database cursor STREAM_CHUNK_SIZE rows at a time, which needs
+    a transaction and a prepared statement. Either way a CollectionWriter writes the
+    rows into the response body, running expander, if any, on one chunk of
+    STREAM_CHUNK_SIZE records at a time.
+  */
+  public <T> Future<Response> getCollection(String tableName, String collectionName, Class<T> clazz,
+      Function<List<T>, Future<List<T>>> expander, String query, int offset, int limit, String cursor,
+      String totalRecords, Map<String, String> okapiHeaders, Context vertxContext) {
+    String tenantId = getTenant(okapiHeaders);
+    String schema = PostgresClient.convertToPsqlStandard(tenantId);
+    String pageSql;
+    String countSql;
+    Tuple params = Tuple.tuple();
+    try {
+      if (cursor != null) {
+        PageCursor.Page page = PageCursor.page(schema, tableName, query, cursor);
+        pageSql = "SELECT id, jsonb::text" + page.getKeyColumn() + page.getFromWhere()
+            + page.getAfter() + page.getOrderBy() + " LIMIT " + limit;
+        params = page.getParams();
+        countSql = "SELECT id" + page.getFromWhere();
+      } else {
+        CQLWrapper cql = getCQL(query, limit, offset, tableName);
+        String from = " FROM " + schema + "." + tableName + " ";
+        pageSql = "SELECT id, jsonb::text" + from + cql;
+        countSql = "SELECT id" + from + cql.getWithoutLimOff();
+      }
+    } catch (Exception e) {
+      return Future.failedFuture(e);
+    }
+    PostgresClient pgClient = getPGClient(vertxContext, tenantId);
+    CollectionWriter<T> writer = new CollectionWriter<>(collectionName, clazz, expander,
+        STREAM_CHUNK_SIZE);
+    Future<Void> pageFuture;
+    Tuple pageParams = params;
+    if (limit <= STREAM_CHUNK_SIZE) {
+      pageFuture = pgClient.select(pageSql, pageParams).compose(writer::writeRows);
+    } else {
+      pageFuture = pgClient.getClient().withTransaction(conn -> conn.prepare(pageSql)
+          .compose(ps -> writer.write(ps.createStream(STREAM_CHUNK_SIZE, pageParams))));
+    }
+    Future<Long> countFuture = countRecords(pgClient, schema, countSql, totalRecords);
+    return CompositeFuture.all(pageFuture, countFuture).map(x -> {
+      String nextCursor = null;
+      if (cursor != null && limit > 0 && writer.getCount() == limit) {
+        nextCursor = PageCursor.encode(writer.getLastKey(), writer.getLastId());
+      }
+      long total;
+      if (TOTAL_RECORDS_NONE.equals(totalRecords)) {
+        total = (cursor == null ? offset : 0) + writer.getCount();
+      } else {
+        total = countFuture.result();
+      }
+      Boolean estimated = totalRecords == null ? null : !TOTAL_RECORDS_EXACT.equals(totalRecords);
+      return Response.status(200).header("Content-Type", "application/json")
+          .entity(writer.toJson(total, estimated, nextCursor)).build();
+    });
+  }
+
+  /*
+    The number of records selected by countSql for totalRecords: exact counts them,
+    estimated takes the row estimate of the query planner, and none skips counting,
+    leaving totalRecords to the records of the page as a lower bound. Without a mode
+    the count_estimate function of RMB decides, like in PgUtil.get: it uses the
+    estimate of the planner, but counts exactly if that is small. With a mode the
+    response tells in totalRecordsEstimated whether the number is exact.
+  */
+  private static Future<Long> countRecords(PostgresClient pgClient, String schema, String countSql,
+      String totalRecords) {
+    if (TOTAL_RECORDS_NONE.equals(totalRecords)) {
+      return Future.succeededFuture();
+    }
+    if (TOTAL_RECORDS_EXACT.equals(totalRecords)) {
+      return pgClient.select("SELECT count(*) FROM (" + countSql + ") matches")
+          .map(rows -> rows.iterator().next().getLong(0));
+    }
+    if (TOTAL_RECORDS_ESTIMATED.equals(totalRecords)) {
+      return pgClient.select("EXPLAIN (FORMAT JSON) " + countSql)
+          .map(rows -> planRows(rows.iterator().next().getValue(0)));
+    }
+    return pgClient.select("SELECT " + schema + ".count_estimate($1)", Tuple.of(countSql))
+        .map(rows -> rows.iterator().next().getLong(0));
+  }
+
+  private static Long planRows(Object plan) {
+    JsonArray planArray = plan instanceof JsonArray ? (JsonArray) plan : new JsonArray(plan.toString());
+    return planArray.getJsonObject(0).getJsonObject("Plan").getLong("Plan Rows");
+  }
+
+  protected Response rawCollectionError(Throwable err, Function<String, Response> respond400,
+      Function<String, Response> respond500) {
+    String message = logAndSaveError(err);
+    if (err instanceof QueryValidationException || err instanceof IllegalArgumentException
+        || isCQLError(err)) {
+      return respond400.apply(getErrorResponse(message));
+    }
+    return respond500.apply(getErrorResponse(message));
+  }
+
   public Future<Void> deleteItem(String tableName, String id, Map<String, String> okapiHeaders, Context vertxContext) {
     PostgresClient pgClient = getPGClientFromHeaders(vertxContext, okapiHeaders);
     return pgClient.delete(tableName, id).mapEmpty();
@@ -1047,7 +1399,8 @@ public class CourseAPI implements org.folio.rest.jaxrs.resource.Coursereserves {
       if (reserve.getItemId() == null) {
         return Future.succeededFuture();
       }
-      return resetItemTemporaryLocation(reserve.getItemId(), okapiHeaders, vertxContext)
+      return resetItemTemporaryLocation(reserve.getItemId(),
+              new OkapiClient(vertxContext.owner(), okapiHeaders))
               .recover(x -> {
                 logger.error("Unable to delete item '{}': {}", reserve.getItemId(), x.getMessage(), x);
                 return Future.succeededFuture();
@@ -1057,268 +1410,488 @@ public class CourseAPI implements org.folio.rest.jaxrs.resource.Coursereserves {
     });
   }
 
-  public Future<Void> resetItemTemporaryLocation(String itemId, Map<String, String> okapiHeaders,
-          Context vertxContext) {
-    return CRUtil.lookupItemHoldingsInstanceByItemId(itemId, okapiHeaders, vertxContext)
+  public Future<Void> resetItemTemporaryLocation(String itemId, OkapiClient okapiClient) {
+    return CRUtil.lookupItemHoldingsInstanceByItemId(itemId, okapiClient)
             .compose(itemHoldingInstanceRes -> {
               JsonObject itemJson = itemHoldingInstanceRes.getJsonObject("item");
               itemJson.putNull("temporaryLocationId");
-              return CRUtil.putItemUpdate(itemJson, okapiHeaders, vertxContext);
+              return CRUtil.putItemUpdate(itemJson, okapiClient);
             });
   }
 
   public static void scrubDerivedFields(final Object pojo) {
-    String[] fieldArray = scrubMap.get(pojo.getClass());
-    if (fieldArray == null || fieldArray.length == 0) {
-      return;
-    }
-    for (String field : fieldArray) {
-      Object currentObject = pojo;
-      String singleField = "";
-      try {
-        String[] subFieldArray = field.split("\\.");
-        for (int i = 0; i < subFieldArray.length; i++) {
-          if (currentObject == null) {
-            break;
-          } else {
-            singleField = subFieldArray[i];
-            String capField = singleField.substring(0, 1).toUpperCase() +
-                singleField.substring(1);
-            if(i == subFieldArray.length - 1) {
-              String setterMethodName = "set" + capField;
-              Method setterMethod = getMethodByName(currentObject, setterMethodName);
-              if (setterMethod != null) {
-                logger.debug("Calling set method {} ({} expected parameters) with value null",
-                    setterMethod.getName(), setterMethod.getParameterCount());
-                setterMethod.invoke(currentObject, new Object[] { null }); // Set field to null
-              }
-              break;
-            } else {
-              String getterMethodName = "get" + capField;
-              Method getterMethod = getMethodByName(currentObject, getterMethodName);
-              if (getterMethod != null) {
-                logger.debug("Calling get method {}", getterMethod.getName());
-                currentObject = getterMethod.invoke(currentObject);
-              } else {
-                break;
-              }
-            }
-          }
-        }
-      } catch (Exception e) {
-        logger.debug("Error scrubbing derived fields with field '{}' and object {}: {}",
-            singleField, currentObject.getClass().getName(), e.getMessage(), e);
-      }
+    ScrubPlan scrubPlan = scrubPlans.get(pojo.getClass());
+    if (scrubPlan != null) {
+      scrubPlan.scrub(pojo);
     }
   }
 
-  public static Method getMethodByName(Object pojo, String name) {
-    Method[] allMethods = pojo.getClass().getMethods();
-    for (Method method : allMethods) {
-      if (method.getName().equals(name)) {
-        return method;
-      }
-    }
-    return null;
-  }
-
   public void handleGetReserves(String expand, String query, int offset, int limit, Map<String, String> okapiHeaders,
       Handler<AsyncResult<Response>> asyncResultHandler, Context vertxContext) {
+    handleGetReserves(expand, null, null, query, offset, limit, okapiHeaders, asyncResultHandler, vertxContext);
+  }
+
+  public void handleGetReserves(String expand, String cursor, String totalRecords, String query, int offset,
+      int limit, Map<String, String> okapiHeaders, Handler<AsyncResult<Response>> asyncResultHandler,
+      Context vertxContext) {
+    String shelfQuery = Util.sortByShelvingOrder(query);
+    if (expand == null || !expand.equals("*")) {
+      getRawCollection(RESERVES_TABLE, "reserves", shelfQuery, offset, limit, cursor, totalRecords,
+          okapiHeaders, vertxContext)
+          .otherwise(this::getReservesError)
+          .onComplete(asyncResultHandler);
+      return;
+    }
+    OkapiClient okapiClient = new OkapiClient(vertxContext.owner(), okapiHeaders);
+    /*
+      The stored reserve and the items of Reserves have the same schema, so the
+      expanded reserves are written as they are, without copying them into Reserf.
+    */
+    if (cursor != null || totalRecords != null || limit > STREAM_CHUNK_SIZE) {
+      getCollection(RESERVES_TABLE, "reserves", Reserve.class,
+          reserveList -> CRUtil.expandListOfReserves(reserveList, okapiHeaders, vertxContext,
+              okapiClient),
+          shelfQuery, offset, limit, cursor, totalRecords, okapiHeaders, vertxContext)
+          .otherwise(this::getReservesError)
+          .onComplete(asyncResultHandler);
+      return;
+    }
     String tenantId = getTenant(okapiHeaders);
     PostgresClient pgClient = getPGClient(vertxContext, tenantId);
     try {
-      getItems(RESERVES_TABLE, Reserve.class, getCQL(query, limit, offset, RESERVES_TABLE), pgClient)
+      getItems(RESERVES_TABLE, Reserve.class, getCQL(shelfQuery, limit, offset, RESERVES_TABLE), pgClient)
           .onComplete(getReply -> {
             if (getReply.failed()) {
-              String message = logAndSaveError(getReply.cause());
-              asyncResultHandler
-                  .handle(Future.succeededFuture(GetCoursereservesCourselistingsReservesByListingIdResponse
-                      .respond500WithTextPlain(getErrorResponse(message))));
+              asyncResultHandler.handle(Future.succeededFuture(getReservesError(getReply.cause())));
             } else {
-              Future<List<Reserve>> reserveListFuture;
-              if (expand == null || !expand.equals("*")) {
-                reserveListFuture = Future.succeededFuture(getReply.result().getResults());
-              } else {
-                reserveListFuture = CRUtil.expandListOfReserves(getReply.result().getResults(), okapiHeaders,
-                    vertxContext);
-              }
-              reserveListFuture.onComplete(reserveListRes -> {
-                if (reserveListRes.failed()) {
-                  String message = logAndSaveError(reserveListRes.cause());
-                  asyncResultHandler
-                      .handle(Future.succeededFuture(GetCoursereservesCourselistingsReservesByListingIdResponse
-                          .respond500WithTextPlain(getErrorResponse(message))));
-                } else {
-                  Reserves reserves = new Reserves();
-                  reserves.setReserves(reserfListFromReserveList(reserveListRes.result()));
-                  reserves.setTotalRecords(getReply.result().getResultInfo().getTotalRecords());
-                  asyncResultHandler
-                      .handle(Future.succeededFuture(GetCoursereservesCourselistingsReservesByListingIdResponse
-                          .respond200WithApplicationJson(reserves)));
-                }
-              });
+              CRUtil.expandListOfReserves(getReply.result().getResults(), okapiHeaders, vertxContext,
+                  okapiClient)
+                  .onComplete(reserveListRes -> {
+                    if (reserveListRes.failed()) {
+                      String message = logAndSaveError(reserveListRes.cause());
+                      asyncResultHandler
+                          .handle(Future.succeededFuture(GetCoursereservesCourselistingsReservesByListingIdResponse
+                              .respond500WithTextPlain(getErrorResponse(message))));
+                    } else {
+                      Reserves reserves = new Reserves();
+                      reserves.setReserves(reserfListFromReserveList(reserveListRes.result()));
+                      reserves.setTotalRecords(getReply.result().getResultInfo().getTotalRecords());
+                      asyncResultHandler
+                          .handle(Future.succeededFuture(GetCoursereservesCourselistingsReservesByListingIdResponse
+                              .respond200WithApplicationJson(reserves)));
+                    }
+                  });
             }
           });
     } catch (Exception e) {
-      String message = logAndSaveError(e);
-      if (isCQLError(e)) {
-        message = String.format("CQL Error: %s", message);
-      }
-      asyncResultHandler.handle(Future.succeededFuture(GetCoursereservesCourselistingsReservesByListingIdResponse
-          .respond500WithTextPlain(getErrorResponse(message))));
+      asyncResultHandler.handle(Future.succeededFuture(getReservesError(e)));
     }
 
   }
 
+  /* A bad query or cursor is answered with 400, whichever way the reserves are read */
+  private Response getReservesError(Throwable err) {
+    return rawCollectionError(err,
+        GetCoursereservesCourselistingsReservesByListingIdResponse::respond400WithTextPlain,
+        GetCoursereservesCourselistingsReservesByListingIdResponse::respond500WithTextPlain);
+  }
+
   public void handleWriteReserves(String listingId, Reserve entity,
       Map<String, String> okapiHeaders, Handler<AsyncResult<Response>> asyncResultHandler,
       Context vertxContext, WriteType writeType) {
-    CRUtil.getCourseListingById(listingId, okapiHeaders, vertxContext)
-        .onComplete(getCLRes -> {
-      try {
-        final String courseListingLocation;
-        if(!getCLRes.failed()) {
-          courseListingLocation = getCLRes.result().getLocationId();
-        } else {
-          courseListingLocation = null;
-        }
-        logger.info("courseListingLocation has a value of {}", courseListingLocation);
-        final WrapString originalTemporaryLocationId = new WrapString();
-        if (entity.getCopiedItem() != null) {
-          originalTemporaryLocationId.set(entity.getCopiedItem().getTemporaryLocationId());
-        }
-
-        logger.info("originalTemporaryLocationId has a value of {}", originalTemporaryLocationId.get());
+    try {
+      OkapiClient okapiClient = new OkapiClient(vertxContext.owner(), okapiHeaders);
+      final WrapString originalTemporaryLocationId = new WrapString();
+      if (entity.getCopiedItem() != null) {
+        originalTemporaryLocationId.set(entity.getCopiedItem().getTemporaryLocationId());
+      }
 
-        Future<JsonObject> getCopiedItemsFuture;
-        if(entity.getItemId() != null || (
-            entity.getCopiedItem() != null && entity.getCopiedItem().getBarcode() != null)) {
-          getCopiedItemsFuture = CRUtil.populateReserveInventoryCache(entity,
-              okapiHeaders, vertxContext);
-        } else {
-          logger.info("Not attempting to look up copied items for reserve");
-          getCopiedItemsFuture = Future.succeededFuture();
-        }
-        getCopiedItemsFuture.onComplete(getCopiedItemsRes-> {
-          if(getCopiedItemsRes.failed()) {
-            String message = logAndSaveError(getCopiedItemsRes.cause());
+      logger.info("originalTemporaryLocationId has a value of {}", originalTemporaryLocationId.get());
+
+      String barcode = entity.getCopiedItem() != null ? entity.getCopiedItem().getBarcode() : null;
+      /*
+        Reading the course listing and looking up the item in inventory are independent
+        of each other and run concurrently. That an item is reserved only once per listing
+        is enforced by a unique index when the reserve is saved, before the item is updated.
+      */
+      Future<CourseListing> courseListingFuture = CRUtil.getCourseListingById(listingId,
+          okapiHeaders, vertxContext);
+      Future<JsonObject> getCopiedItemsFuture;
+      if(entity.getItemId() != null || barcode != null) {
+        getCopiedItemsFuture = CRUtil.populateReserveInventoryCache(entity, okapiClient);
+      } else {
+        logger.info("Not attempting to look up copied items for reserve");
+        getCopiedItemsFuture = Future.succeededFuture();
+      }
+      CompositeFuture.join(courseListingFuture, getCopiedItemsFuture)
+          .onComplete(joinRes -> {
+        try {
+          if(getCopiedItemsFuture.failed()) {
+            String message = logAndSaveError(getCopiedItemsFuture.cause());
             //Fail it
             asyncResultHandler.handle(Future.succeededFuture(
                 PostCoursereservesCourselistingsReservesByListingIdResponse
                     .respond400WithTextPlain(getErrorResponse(message))));
+            return;
+          }
+          final String courseListingLocation;
+          if(!courseListingFuture.failed()) {
+            courseListingLocation = courseListingFuture.result().getLocationId();
           } else {
-            String itemId;
-            JsonObject retrievedItemJson = getCopiedItemsFuture.result().getJsonObject("item");
-            if(retrievedItemJson != null) {
-              logger.info("Got retrieved item JSON: {}", retrievedItemJson.encode());
-              itemId = retrievedItemJson.getString("id");
-            } else {
-              itemId = null;
-            }
+            courseListingLocation = null;
+          }
+          logger.info("courseListingLocation has a value of {}", courseListingLocation);
+          String itemId;
+          JsonObject retrievedItemJson = getCopiedItemsFuture.result().getJsonObject("item");
+          if(retrievedItemJson != null) {
+            logger.info("Got retrieved item JSON: {}", retrievedItemJson.encode());
+            itemId = retrievedItemJson.getString("id");
+          } else {
+            itemId = null;
+          }
 
-            //If courseListingLocation is populated, use it as the temporary location
-            if(writeType == WriteType.POST && courseListingLocation != null ) {
-              logger.info("Using courseListing location '{}' for reserve temporary location", courseListingLocation);
-              originalTemporaryLocationId.set(courseListingLocation);
+          //If courseListingLocation is populated, use it as the temporary location
+          if(writeType == WriteType.POST && courseListingLocation != null ) {
+            logger.info("Using courseListing location '{}' for reserve temporary location", courseListingLocation);
+            originalTemporaryLocationId.set(courseListingLocation);
+          }
+          if(entity.getStartDate() != null) {
+            entity.setStartDate(CRUtil.UTCFromLocalDate(entity.getStartDate()));
+          }
+          if(entity.getEndDate() != null) {
+            entity.setEndDate(CRUtil.UTCFromLocalDate(entity.getEndDate()));
+          }
+          JsonObject itemJson = null;
+          if(getCopiedItemsFuture.succeeded() && getCopiedItemsFuture.result() != null) {
+            itemJson = getCopiedItemsFuture.result().getJsonObject("item");
+            if(originalTemporaryLocationId.get() != null || writeType == CourseAPI.WriteType.PUT) {
+              itemJson.put("temporaryLocationId", originalTemporaryLocationId.get());
             }
-            //String finalOriginalTemporaryLocationId = originalTemporaryLocationId;
-            Future<Boolean> checkItemInUseFuture;
-            if(writeType == WriteType.POST) {
-              checkItemInUseFuture = checkUniqueReserveForListing(listingId, itemId, okapiHeaders,
-                vertxContext);
-            } else {
-              checkItemInUseFuture = Future.succeededFuture(Boolean.FALSE);
+            if(entity.getTemporaryLoanTypeId() != null) {
+              itemJson.put("temporaryLoanTypeId", entity.getTemporaryLoanTypeId());
+            }
+          }
+          //We need to set the temporary location if it exists
+          if(entity.getCopiedItem() != null) {
+            if(originalTemporaryLocationId.get() != null || writeType == WriteType.PUT) {
+              entity.getCopiedItem().setTemporaryLocationId(originalTemporaryLocationId.get());
             }
-            checkItemInUseFuture.onComplete(checkItemInUseRes -> {
-              if(checkItemInUseRes.succeeded() && Boolean.TRUE.equals(checkItemInUseRes.result())) {
-                String message = "itemId " + itemId + " is already in use for courseListing "
-                    + listingId;
+          }
+          if(writeType == WriteType.POST) {
+            postReserve(listingId, entity, itemJson, okapiHeaders, asyncResultHandler,
+                vertxContext, okapiClient);
+            return;
+          }
+          Future<Void> putInventoryFuture = itemJson == null ? Future.succeededFuture()
+              : CRUtil.putItemUpdate(itemJson, okapiClient);
+          putInventoryFuture
+              .onSuccess(x -> PgUtil.put(RESERVES_TABLE, entity, entity.getId(), okapiHeaders,
+                  vertxContext,
+                  PutCoursereservesCourselistingsReservesByListingIdAndReserveIdResponse.class,
+                  asyncResultHandler))
+              .onFailure(e -> {
+                String message = logAndSaveError(e);
                 asyncResultHandler.handle(Future.succeededFuture(
-                      PostCoursereservesCourselistingsReservesByListingIdResponse
-                          .respond422WithApplicationJson(ValidationHelper
-                          .createValidationErrorMessage("itemId", itemId, message))));
-              } else {
-                try {
-                  if(entity.getStartDate() != null) {
-                    entity.setStartDate(CRUtil.UTCFromLocalDate(entity.getStartDate()));
-                  }
-                  if(entity.getEndDate() != null) {
-                    entity.setEndDate(CRUtil.UTCFromLocalDate(entity.getEndDate()));
-                  }
-                  Future<Void> putInventoryFuture;
-                  //Should we issue a PUT to inventory if it's a POST request?
-                  //if((finalOriginalTemporaryLocationId != null || entity.getTemporaryLoanTypeId() != null)
-                  //    && getCopiedItemsFuture.succeeded()) {
-                  if(getCopiedItemsFuture.succeeded() && getCopiedItemsFuture.result() != null) {
-                    JsonObject itemJson = getCopiedItemsFuture.result().getJsonObject("item");
-                    if(originalTemporaryLocationId.get() != null || writeType == CourseAPI.WriteType.PUT) {
-                      itemJson.put("temporaryLocationId", originalTemporaryLocationId.get());
-                    }
-                    if(entity.getTemporaryLoanTypeId() != null) {
-                      itemJson.put("temporaryLoanTypeId", entity.getTemporaryLoanTypeId());
-                    }
-                    putInventoryFuture = CRUtil.putItemUpdate(itemJson, okapiHeaders, vertxContext);
-                  } else {
-                    putInventoryFuture = Future.succeededFuture();
-                  }
-                  putInventoryFuture.<Void>map(x -> {
-                    //We need to set the temporary location if it exists
-                    //if(finalOriginalTemporaryLocationId != null && entity.getCopiedItem() != null) {
-                    if(entity.getCopiedItem() != null) {
-                      if(originalTemporaryLocationId.get() != null || writeType == WriteType.PUT) {
-                        entity.getCopiedItem().setTemporaryLocationId(originalTemporaryLocationId.get());
-                      }
-                    }
-                    //should we kill the POST if the PUT to inventory fails?
-                    if(writeType == WriteType.POST) {
-                      PgUtil.post(RESERVES_TABLE, entity, okapiHeaders, vertxContext,
-                          PostCoursereservesCourselistingsReservesByListingIdResponse.class,
-                          asyncResultHandler);
-                    } else {
-                      PgUtil.put(RESERVES_TABLE, entity, entity.getId(), okapiHeaders,
-                          vertxContext,
-                          PutCoursereservesCourselistingsReservesByListingIdAndReserveIdResponse.class,
-                          asyncResultHandler);
-                    }
-                    return null;
-                  })
-                  .onFailure(e -> {
-                    String message = logAndSaveError(e);
-                    asyncResultHandler.handle(Future.succeededFuture(
-                        PostCoursereservesCourselistingsReservesByListingIdResponse
-                        .respond500WithTextPlain(getErrorResponse(message))));
-                  });
-                } catch(Exception e) {
-                  String message = logAndSaveError(e);
-                  asyncResultHandler.handle(Future.succeededFuture(
-                      PostCoursereservesCourselistingsReservesByListingIdResponse
-                      .respond500WithTextPlain(getErrorResponse(message))));
-                }
-              }
-            });
+                    PostCoursereservesCourselistingsReservesByListingIdResponse
+                    .respond500WithTextPlain(getErrorResponse(message))));
+              });
+        } catch(Exception e) {
+          String message = logAndSaveError(e);
+          asyncResultHandler.handle(Future.succeededFuture(
+              PostCoursereservesCourselistingsReservesByListingIdResponse
+              .respond500WithTextPlain(getErrorResponse(message))));
+        }
+      });
+    } catch(Exception e) {
+      String message = logAndSaveError(e);
+      asyncResultHandler.handle(Future.succeededFuture(
+          PostCoursereservesCourselistingsReservesByListingIdResponse
+          .respond500WithTextPlain(getErrorResponse(message))));
+    }
+  }
+
+  private static Response reserveInUseResponse(String listingId, String itemId) {
+    String message = "itemId " + itemId + " is already in use for courseListing " + listingId;
+    return PostCoursereservesCourselistingsReservesByListingIdResponse
+        .respond422WithApplicationJson(ValidationHelper
+        .createValidationErrorMessage("itemId", itemId, message));
+  }
+
+  /*
+    Save a new reserve, then update its item in inventory. A second reserve for the
+    same item in the same course listing violates the courseListingId_itemId unique
+    index and is answered with 422 before the item is touched. If the item can not be
+    updated, the reserve is removed again.
+  */
+  private void postReserve(String listingId, Reserve entity, JsonObject itemJson,
+      Map<String, String> okapiHeaders, Handler<AsyncResult<Response>> asyncResultHandler,
+      Context vertxContext, OkapiClient okapiClient) {
+    if (entity.getId() == null) {
+      entity.setId(UUID.randomUUID().toString());
+    }
+    PostgresClient postgresClient = getPGClientFromHeaders(vertxContext, okapiHeaders);
+    postgresClient.save(RESERVES_TABLE, entity.getId(), entity)
+        .onFailure(e -> {
+          if (isDuplicateReserve(e.getMessage())) {
+            asyncResultHandler.handle(Future.succeededFuture(
+                reserveInUseResponse(listingId, entity.getItemId())));
+          } else {
+            logAndSaveError(e);
+            ValidationHelper.handleError(e, asyncResultHandler);
           }
+        })
+        .onSuccess(id -> {
+          Future<Void> putInventoryFuture = itemJson == null ? Future.succeededFuture()
+              : CRUtil.putItemUpdate(itemJson, okapiClient);
+          putInventoryFuture
+              .onSuccess(x -> asyncResultHandler.handle(Future.succeededFuture(
+                  PostCoursereservesCourselistingsReservesByListingIdResponse
+                      .respond201WithApplicationJson(entity,
+                          PostCoursereservesCourselistingsReservesByListingIdResponse.headersFor201()
+                              .withLocation("/coursereserves/reserves/" + id)))))
+              .onFailure(e -> {
+                String message = logAndSaveError(e);
+                postgresClient.delete(RESERVES_TABLE, id)
+                    .onFailure(deleteError -> logger.error("Unable to remove reserve {}: {}", id,
+                        deleteError.getMessage(), deleteError));
+                asyncResultHandler.handle(Future.succeededFuture(
+                    PostCoursereservesCourselistingsReservesByListingIdResponse
+                        .respond500WithTextPlain(getErrorResponse(message))));
+              });
         });
-      } catch(Exception e) {
-        String message = logAndSaveError(e);
-        asyncResultHandler.handle(Future.succeededFuture(
-            PostCoursereservesCourselistingsReservesByListingIdResponse
-            .respond500WithTextPlain(getErrorResponse(message))));
-      }
-    });
+  }
+
+  protected static boolean isDuplicateReserve(String errorMessage) {
+    return isDuplicate(errorMessage)
+        && errorMessage.toLowerCase().contains(RESERVE_ITEM_UNIQUE_INDEX);
+  }
 
+  /*
+    A reserve of a batch request together with the inventory item it is for and the
+    result entry it reports to
+  */
+  private static class BatchReserve {
+    private final Reserve reserve;
+    private final JsonObject itemJson;
+    private final ReserveBatchItemResult result;
+
+    BatchReserve(Reserve reserve, JsonObject itemJson, ReserveBatchItemResult result) {
+      this.reserve = reserve;
+      this.itemJson = itemJson;
+      this.result = result;
+    }
   }
 
-  public Future<Boolean> checkUniqueReserveForListing(String courseListingId, String itemId,
-      Map<String, String> okapiHeaders, Context context) {
-    PostgresClient postgresClient = getPGClientFromHeaders(context, okapiHeaders);
-    String query = "courseListingId=" + courseListingId + " AND itemId=" + itemId;
+  private static void failBatchEntry(ReserveBatchItemResult result, String message) {
+    result.setStatus(ReserveBatchItemResult.Status.FAILED);
+    result.setMessage(message);
+  }
+
+  /*
+    Match the requested entries against the inventory records found and build a reserve
+    for each of them. Entries that can not be matched to exactly one item are failed.
+  */
+  private static List<BatchReserve> buildBatchReserves(String listingId, ReserveBatch batch,
+      CourseListing courseListing, List<JsonObject> inventoryList,
+      List<ReserveBatchItemResult> results) {
+    Map<String, JsonObject> inventoryByItemId = new HashMap<>();
+    Map<String, List<JsonObject>> inventoryByBarcode = new HashMap<>();
+    for (JsonObject inventory : inventoryList) {
+      JsonObject itemJson = inventory.getJsonObject("item");
+      inventoryByItemId.put(itemJson.getString("id"), inventory);
+      if (itemJson.getString("barcode") != null) {
+        inventoryByBarcode.computeIfAbsent(itemJson.getString("barcode"),
+            k -> new ArrayList<>()).add(inventory);
+      }
+    }
+    String temporaryLocationId = courseListing.getLocationId() != null
+        ? courseListing.getLocationId() : batch.getTemporaryLocationId();
+    Set<String> batchItemIds = new HashSet<>();
+    List<BatchReserve> pending = new ArrayList<>();
+    for (ReserveBatchItemResult result : results) {
+      if (result.getStatus() == ReserveBatchItemResult.Status.FAILED) {
+        continue;
+      }
+      JsonObject inventory;
+      if (result.getBarcode() != null) {
+        List<JsonObject> matches = inventoryByBarcode.getOrDefault(result.getBarcode(),
+            Collections.emptyList());
+        if (matches.size() != 1) {
+          failBatchEntry(result, matches.isEmpty()
+              ? "No item found for barcode " + result.getBarcode()
+              : "Expected 1 result for barcode " + result.getBarcode() + ", got "
+                  + matches.size());
+          continue;
+        }
+        inventory = matches.get(0);
+      } else {
+        inventory = inventoryByItemId.get(result.getItemId());
+        if (inventory == null) {
+          failBatchEntry(result, "Item " + result.getItemId() + " not found in inventory");
+          continue;
+        }
+      }
+      JsonObject itemJson = inventory.getJsonObject("item");
+      String itemId = itemJson.getString("id");
+      result.setItemId(itemId);
+      if (!batchItemIds.add(itemId)) {
+        failBatchEntry(result, "itemId " + itemId + " is listed more than once");
+        continue;
+      }
+      Reserve reserve = new Reserve()
+          .withId(UUID.randomUUID().toString())
+          .withCourseListingId(listingId)
+          .withItemId(itemId)
+          .withProcessingStatusId(batch.getProcessingStatusId())
+          .withTemporaryLoanTypeId(batch.getTemporaryLoanTypeId());
+      if (batch.getStartDate() != null) {
+        reserve.setStartDate(CRUtil.UTCFromLocalDate(batch.getStartDate()));
+      }
+      if (batch.getEndDate() != null) {
+        reserve.setEndDate(CRUtil.UTCFromLocalDate(batch.getEndDate()));
+      }
+      if (batch.getCopyrightStatusId() != null) {
+        reserve.setCopyrightTracking(new CopyrightTracking()
+            .withCopyrightStatusId(batch.getCopyrightStatusId()));
+      }
+      CRUtil.populateReserveCopiedItemFromJson(reserve, inventory);
+      if (temporaryLocationId != null) {
+        itemJson.put("temporaryLocationId", temporaryLocationId);
+        reserve.getCopiedItem().setTemporaryLocationId(temporaryLocationId);
+      }
+      if (batch.getTemporaryLoanTypeId() != null) {
+        itemJson.put("temporaryLoanTypeId", batch.getTemporaryLoanTypeId());
+      }
+      pending.add(new BatchReserve(reserve, itemJson, result));
+    }
+    return pending;
+  }
+
+  /*
+    Fail the reserves whose item is already on reserve for the listing, with a single
+    query for the whole batch
+  */
+  private Future<Void> checkBatchReservesUnique(String listingId, List<BatchReserve> pending,
+      Map<String, String> okapiHeaders, Context vertxContext) {
+    if (pending.isEmpty()) {
+      return Future.succeededFuture();
+    }
+    List<String> itemIds = new ArrayList<>();
+    for (BatchReserve batchReserve : pending) {
+      itemIds.add(batchReserve.reserve.getItemId());
+    }
+    String query = "courseListingId==" + StringUtil.cqlEncode(listingId) + " and "
+        + CRUtil.makeListQuery("itemId", itemIds);
+    CQLWrapper cql;
     try {
-      CQLWrapper cql = CourseAPI.getCQL(query, 0, 1, RESERVES_TABLE);
-      return getItems(RESERVES_TABLE, Reserve.class, cql, postgresClient).map(getReply ->
-          getReply.getResultInfo().getTotalRecords() > 0);
-    } catch (Exception e) {
+      cql = getCQL(query, itemIds.size(), 0, RESERVES_TABLE);
+    } catch (FieldException e) {
       return Future.failedFuture(e);
     }
+    PostgresClient postgresClient = getPGClientFromHeaders(vertxContext, okapiHeaders);
+    return postgresClient.get(RESERVES_TABLE, Reserve.class, new String[]{"*"}, cql, false)
+        .map(existing -> {
+          Set<String> inUse = new HashSet<>();
+          for (Reserve reserve : existing.getResults()) {
+            inUse.add(reserve.getItemId());
+          }
+          pending.removeIf(batchReserve -> {
+            String itemId = batchReserve.reserve.getItemId();
+            if (inUse.contains(itemId)) {
+              failBatchEntry(batchReserve.result, "itemId " + itemId
+                  + " is already in use for courseListing " + listingId);
+              return true;
+            }
+            return false;
+          });
+          return null;
+        });
   }
 
+  /*
+    Set the temporary location and loan type of the items of the saved reserves. Only
+    items whose reserve was saved are updated. A reserve whose item can not be updated
+    is removed again and fails.
+  */
+  private Future<Void> putBatchItemUpdates(List<BatchReserve> pending,
+      Map<String, String> okapiHeaders, Context vertxContext, OkapiClient okapiClient) {
+    List<BatchReserve> saved = new ArrayList<>();
+    for (BatchReserve batchReserve : pending) {
+      if (batchReserve.result.getStatus() == ReserveBatchItemResult.Status.CREATED) {
+        saved.add(batchReserve);
+      }
+    }
+    if (saved.isEmpty()) {
+      return Future.succeededFuture();
+    }
+    PostgresClient postgresClient = getPGClientFromHeaders(vertxContext, okapiHeaders);
+    return FanOut.map(saved, batchReserve ->
+        CRUtil.putItemUpdate(batchReserve.itemJson, okapiClient)
+            .recover(e -> {
+              logAndSaveError(e);
+              String reserveId = batchReserve.reserve.getId();
+              String message = "Unable to update item " + batchReserve.reserve.getItemId()
+                  + ": " + e.getMessage();
+              return postgresClient.delete(RESERVES_TABLE, reserveId)
+                  .map(message)
+                  .recover(deleteErr -> {
+                    logAndSaveError(deleteErr);
+                    return Future.succeededFuture(message + "; reserve " + reserveId
+                        + " could not be removed: " + deleteErr.getMessage());
+                  })
+                  .<Void>map(failMessage -> {
+                    failBatchEntry(batchReserve.result, failMessage);
+                    batchReserve.result.setReserve(null);
+                    return null;
+                  });
+            }), okapiHeaders)
+        .mapEmpty();
+  }
+
+  /*
+    Insert all reserves in one statement. If that fails, such as when a reserve for
+    the same item was saved concurrently, they are saved one by one so that only the
+    offending ones fail.
+  */
+  private Future<Void> saveBatchReserves(String listingId, List<BatchReserve> pending,
+      Map<String, String> okapiHeaders, Context vertxContext) {
+    if (pending.isEmpty()) {
+      return Future.succeededFuture();
+    }
+    List<Reserve> reserveList = new ArrayList<>();
+    for (BatchReserve batchReserve : pending) {
+      reserveList.add(batchReserve.reserve);
+    }
+    PostgresClient postgresClient = getPGClientFromHeaders(vertxContext, okapiHeaders);
+    return postgresClient.saveBatch(RESERVES_TABLE, reserveList)
+        .<Void>map(rows -> {
+          for (BatchReserve batchReserve : pending) {
+            batchReserve.result.withStatus(ReserveBatchItemResult.Status.CREATED)
+                .withReserve(batchReserve.reserve);
+          }
+          return null;
+        })
+        .recover(batchErr -> {
+          logger.info("Saving batch of reserves failed, saving them one by one: {}",
+              batchErr.getMessage());
+          return FanOut.map(pending, batchReserve ->
+              postgresClient.save(RESERVES_TABLE, batchReserve.reserve.getId(),
+                  batchReserve.reserve)
+                  .map(id -> {
+                    batchReserve.result.withStatus(ReserveBatchItemResult.Status.CREATED)
+                        .withReserve(batchReserve.reserve);
+                    return id;
+                  })
+                  .recover(e -> {
+                    String itemId = batchReserve.reserve.getItemId();
+                    failBatchEntry(batchReserve.result, isDuplicateReserve(e.getMessage())
+                        ? "itemId " + itemId + " is already in use for courseListing " + listingId
+                        : e.getMessage());
+                    return Future.succeededFuture();
+                  }), okapiHeaders)
+              .mapEmpty();
+        });
+  }
+
+
 }
@@ -0,0 +1,20 @@
+package org.folio.rest.impl;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+
+import org.folio.coursereserves.util.InvalidationBus;
+import org.folio.rest.resource.interfaces.InitAPI;
+
+public class CoursesInitAPI implements InitAPI {
+
+  @Override
+  public void init(Vertx vertx, Context context, Handler<AsyncResult<Boolean>> handler) {
+    InvalidationBus.start(vertx)
+        .map(Boolean.TRUE)
+        .onComplete(handler);
+  }
+}
@@ -2,11 +2,23 @@ package org.folio.rest.impl;
 
 import io.vertx.core.Context;
 import io.vertx.core.Future;
+import io.vertx.core.json.JsonObject;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowSet;
+import io.vertx.sqlclient.Tuple;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.folio.coursereserves.util.CRUtil;
+import org.folio.coursereserves.util.OkapiClient;
+import org.folio.coursereserves.util.ShelvingOrder;
 import org.folio.rest.jaxrs.model.TenantAttributes;
+import org.folio.rest.persist.PostgresClient;
 import org.folio.rest.tools.utils.TenantLoading;
 
 public class CoursesTenantAPI extends TenantAPI {
@@ -14,11 +26,18 @@ public class CoursesTenantAPI extends TenantAPI {
   public static final String SAMPLE_DATA_COURSELISTING = "c03bcba3-a6a0-4251-b316-0631bb2e6f21";
   public static final Logger logger = LogManager.getLogger(CoursesTenantAPI.class);
   protected static final String PARAMETER_LOAD_SAMPLE = "loadSample";
+  static final int BACKFILL_PAGE_SIZE = 100;
+  /* Smaller than any id, where the backfill starts */
+  private static final UUID NO_ID = new UUID(0, 0);
 
   @Override
   Future<Integer> loadData(TenantAttributes attributes, String tenantId,
                            Map<String, String> headers, Context vertxContext) {
-     return super.loadData(attributes, tenantId, headers, vertxContext).compose(
+     CRUtil.invalidateInventoryCache(tenantId);
+     CRUtil.REFERENCE_DATA_CACHE.invalidateTenant(tenantId);
+     return super.loadData(attributes, tenantId, headers, vertxContext)
+        .compose(num -> backfillShelvingOrder(tenantId, headers, vertxContext).map(num))
+        .compose(
         num ->
           new TenantLoading()
               .withKey(PARAMETER_LOAD_SAMPLE).withLead("sample-data").withPostOnly()
@@ -33,4 +52,85 @@ public class CoursesTenantAPI extends TenantAPI {
               .add("reserves", "coursereserves/reserves")
               .perform(attributes, headers, vertxContext, num));
   }
+
+  /*
+    Give the reserves stored before copiedItem.shelvingOrder existed a key, so that a
+    sortby copiedItem.callNumber, which sorts by the key, keeps them in order. The
+    key is made from the call number parts of their item in inventory. Only for items
+    that are no longer there it is made from the joined call number that was stored,
+    as a number without prefix and suffix. The reserves are read BACKFILL_PAGE_SIZE
+    at a time in id order. If inventory cannot be reached the backfill stops with a
+    warning and leaves the rest for the next upgrade. Returns the number of reserves
+    updated.
+  */
+  public static Future<Integer> backfillShelvingOrder(String tenantId, Map<String, String> headers,
+      Context vertxContext) {
+    String table = PostgresClient.convertToPsqlStandard(tenantId) + "." + CourseAPI.RESERVES_TABLE;
+    PostgresClient pgClient = PostgresClient.getInstance(vertxContext.owner(), tenantId);
+    OkapiClient okapiClient = new OkapiClient(vertxContext.owner(), headers);
+    return backfillShelvingOrder(pgClient, table, headers, okapiClient, NO_ID, 0);
+  }
+
+  private static Future<Integer> backfillShelvingOrder(PostgresClient pgClient, String table,
+      Map<String, String> headers, OkapiClient okapiClient, UUID afterId, int updated) {
+    return pgClient.select("SELECT id, jsonb->>'itemId', jsonb->'copiedItem'->>'callNumber' FROM "
+        + table + " WHERE jsonb->'copiedItem'->>'callNumber' IS NOT NULL"
+        + " AND jsonb->'copiedItem'->>'shelvingOrder' IS NULL AND id > $1"
+        + " ORDER BY id LIMIT " + BACKFILL_PAGE_SIZE, Tuple.of(afterId))
+        .compose(rows -> {
+          if (rows.size() == 0) {
+            return Future.succeededFuture(updated);
+          }
+          List<String> itemIds = new ArrayList<>();
+          UUID lastId = null;
+          for (Row row : rows) {
+            lastId = row.getUUID(0);
+            if (row.getString(1) != null) {
+              itemIds.add(row.getString(1));
+            }
+          }
+          UUID nextId = lastId;
+          return CRUtil.lookupItemHoldingsInstances(itemIds, List.of(), headers, okapiClient)
+              .compose(itemHoldingsInstances ->
+                  updateShelvingOrder(pgClient, table, rows, itemHoldingsInstances)
+                      .compose(pageUpdated -> rows.size() < BACKFILL_PAGE_SIZE
+                          ? Future.succeededFuture(updated + pageUpdated)
+                          : backfillShelvingOrder(pgClient, table, headers, okapiClient, nextId,
+                              updated + pageUpdated)),
+                  e -> {
+                    logger.warn("Unable to look up the items of reserves without shelvingOrder in {},"
+                        + " leaving them for the next upgrade: {}", table, e.getMessage());
+                    return Future.succeededFuture(updated);
+                  });
+        });
+  }
+
+  private static Future<Integer> updateShelvingOrder(PostgresClient pgClient, String table,
+      RowSet<Row> rows, List<JsonObject> itemHoldingsInstances) {
+    Map<String, String> itemKeys = new HashMap<>();
+    for (JsonObject itemHoldingsInstance : itemHoldingsInstances) {
+      JsonObject item = itemHoldingsInstance.getJsonObject("item");
+      itemKeys.put(item.getString("id"),
+          CRUtil.shelvingOrderKey(item, itemHoldingsInstance.getJsonObject("holdings")));
+    }
+    List<Tuple> keys = new ArrayList<>();
+    for (Row row : rows) {
+      String itemId = row.getString(1);
+      String key = itemId != null && itemKeys.containsKey(itemId) ? itemKeys.get(itemId)
+          : ShelvingOrder.key(null, row.getString(2), null);
+      if (key != null) {
+        keys.add(Tuple.of(row.getUUID(0), key));
+      }
+    }
+    if (keys.isEmpty()) {
+      return Future.succeededFuture(0);
+    }
+    logger.info("Adding shelvingOrder to {} reserves in {}", keys.size(), table);
+    return pgClient.getClient()
+        .preparedQuery("UPDATE " + table
+            + " SET jsonb = jsonb_set(jsonb, '{copiedItem,shelvingOrder}', to_jsonb($2::text))"
+            + " WHERE id = $1")
+        .executeBatch(keys)
+        .map(keys.size());
+  }
 }
@@ -0,0 +1,27 @@
+-- The courseListingId_itemId unique index can only be created once no item is
+-- reserved twice for the same course listing. Which of such reserves are to go,
+-- and what their items should look like then, is not for the upgrade to decide,
+-- so it fails and lists them to be resolved by hand first.
+DO $$
+DECLARE
+  conflicts text;
+BEGIN
+  IF to_regclass('${myuniversity}_${mymodule}.coursereserves_reserves') IS NULL THEN
+    RETURN;
+  END IF;
+  SELECT string_agg(format('id %s courseListingId %s itemId %s', id,
+      jsonb->>'courseListingId', jsonb->>'itemId'), E'\n'
+      ORDER BY jsonb->>'courseListingId', jsonb->>'itemId', id)
+  INTO conflicts
+  FROM (
+    SELECT id, jsonb, count(*) OVER (
+        PARTITION BY jsonb->>'courseListingId', jsonb->>'itemId') AS n
+    FROM ${myuniversity}_${mymodule}.coursereserves_reserves
+    WHERE jsonb->>'courseListingId' IS NOT NULL AND jsonb->>'itemId' IS NOT NULL
+  ) AS counted
+  WHERE n > 1;
+  IF conflicts IS NOT NULL THEN
+    RAISE EXCEPTION 'Items reserved more than once for a course listing, remove the extra reserves before upgrading:%',
+        E'\n' || conflicts;
+  END IF;
+END $$;
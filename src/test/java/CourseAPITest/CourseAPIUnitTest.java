@@ -4,11 +4,14 @@ package CourseAPITest;
 import java.util.UUID;
 
 import org.folio.rest.impl.CourseAPI;
+import org.folio.rest.jaxrs.model.CopiedItem;
 import org.folio.rest.jaxrs.model.CopyrightStatusObject;
 import org.folio.rest.jaxrs.model.CopyrightTracking;
 import org.folio.rest.jaxrs.model.CourseListing;
 import org.folio.rest.jaxrs.model.LocationObject;
 import org.folio.rest.jaxrs.model.Reserve;
+import org.folio.rest.jaxrs.model.TemporaryLocationObject;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 
@@ -37,5 +40,22 @@ public class CourseAPIUnitTest {
     assertNull(reserve.getCopyrightTracking().getCopyrightStatusObject());
   }
 
+  @Test
+  public void testScrubNestedAndMissing() {
+    Reserve reserve = new Reserve();
+    CopiedItem copiedItem = new CopiedItem();
+    TemporaryLocationObject temporaryLocationObject = new TemporaryLocationObject();
+    temporaryLocationObject.setId(UUID.randomUUID().toString());
+    copiedItem.setTemporaryLocationObject(temporaryLocationObject);
+    copiedItem.setBarcode("12345");
+    reserve.setCopiedItem(copiedItem);
+    CourseAPI.scrubDerivedFields(reserve);
+    assertNull(reserve.getCopiedItem().getTemporaryLocationObject());
+    assertEquals("12345", reserve.getCopiedItem().getBarcode());
+    Reserve emptyReserve = new Reserve();
+    CourseAPI.scrubDerivedFields(emptyReserve);
+    assertNull(emptyReserve.getCopiedItem());
+  }
+
 
 }
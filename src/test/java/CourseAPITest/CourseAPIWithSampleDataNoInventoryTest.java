@@ -11,7 +11,7 @@ import io.vertx.core.json.JsonObject;
 import io.vertx.ext.unit.Async;
 import io.vertx.ext.unit.TestContext;
 import io.vertx.ext.web.client.WebClient;
-import org.folio.coursereserves.util.CRUtil;
+import org.folio.coursereserves.util.OkapiClient;
 import org.folio.postgres.testing.PostgresTesterContainer;
 import org.folio.rest.RestVerticle;
 import org.folio.rest.persist.PostgresClient;
@@ -88,7 +88,7 @@ public class CourseAPIWithSampleDataNoInventoryTest extends CourseAPIWithSampleD
     Promise<Void> promise = Promise.promise();
     JsonObject payload = new JsonObject().put("wipe", true);
     logger.info("Making request to reset mock okapi data");
-    CRUtil.makeOkapiRequest(vertx, okapiHeaders, "/wipe", POST, null,
+    new OkapiClient(vertx, okapiHeaders).request(POST, "/wipe", null,
         payload.encode(), 201).onComplete(res -> {
       if(res.failed()) {
         promise.fail(res.cause());
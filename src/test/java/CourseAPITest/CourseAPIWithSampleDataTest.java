@@ -20,7 +20,7 @@ import java.util.Map;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.folio.coursereserves.util.CRUtil;
+import org.folio.coursereserves.util.OkapiClient;
 import org.folio.postgres.testing.PostgresTesterContainer;
 import org.folio.rest.RestVerticle;
 import org.folio.rest.persist.PostgresClient;
@@ -119,7 +119,7 @@ public class CourseAPIWithSampleDataTest {
     Promise<Void> promise = Promise.promise();
     JsonObject payload = new JsonObject().put("add", true);
     logger.info("Making request to add sample mock okapi data");
-    CRUtil.makeOkapiRequest(vertx, okapiHeaders, "/addsample", POST, null,
+    new OkapiClient(vertx, okapiHeaders).request(POST, "/addsample", null,
         payload.encode(), 201).onComplete(res -> {
       if(res.failed()) {
         promise.fail(res.cause());
@@ -134,7 +134,7 @@ public class CourseAPIWithSampleDataTest {
     Promise<Void> promise = Promise.promise();
     JsonObject payload = new JsonObject().put("reset", true);
     logger.info("Making request to reset mock okapi data");
-    CRUtil.makeOkapiRequest(vertx, okapiHeaders, "/reset", POST, null,
+    new OkapiClient(vertx, okapiHeaders).request(POST, "/reset", null,
         payload.encode(), 201).onComplete(res -> {
       if(res.failed()) {
         promise.fail(res.cause());
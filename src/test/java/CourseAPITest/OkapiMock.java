@@ -9,7 +9,9 @@ import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
 import io.vertx.ext.web.handler.BodyHandler;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.regex.Matcher;
@@ -20,6 +22,7 @@ import org.folio.util.StringUtil;
 
 public class OkapiMock extends AbstractVerticle {
   private static final Logger logger = LogManager.getLogger(OkapiMock.class);
+  public static boolean inventoryViewAvailable = true;
   public static String user1Id = UUID.randomUUID().toString();
   public static String user2Id = UUID.randomUUID().toString();
   public static String user3Id = UUID.randomUUID().toString();
@@ -108,10 +111,16 @@ public class OkapiMock extends AbstractVerticle {
     router.route("/item-storage/items/:id").handler(this::handleItems);
     router.route("/item-storage/items").handler(this::handleItems);
     router.route("/holdings-storage/holdings/:id").handler(this::handleHoldings);
+    router.route("/holdings-storage/holdings").handler(this::handleHoldings);
     router.route("/instance-storage/instances/:id").handler(this::handleInstances);
+    router.route("/instance-storage/instances").handler(this::handleInstances);
+    router.route("/inventory-view/instances").handler(this::handleInventoryView);
     router.route("/locations/:id").handler(this::handleLocations);
+    router.route("/locations").handler(this::handleLocations);
     router.route("/service-points/:id").handler(this::handleServicePoints);
+    router.route("/service-points").handler(this::handleServicePoints);
     router.route("/loan-types/:id").handler(this::handleLoanTypes);
+    router.route("/loan-types").handler(this::handleLoanTypes);
     router.route("/reset").handler(this::handleReset);
     router.route("/wipe").handler(this::handleWipe);
     router.route("/addsample").handler(this::handleAddSample);
@@ -171,12 +180,15 @@ public class OkapiMock extends AbstractVerticle {
     String id = context.request().getParam("id");
     if (context.request().method() == HttpMethod.GET) {
       String query = context.request().query();
-      if (query != null) {
-        String barcode = parseBarcode(query);
-        logger.info("Searching for barcode {}", barcode);
+      String cqlQuery = context.request().getParam("query");
+      if (cqlQuery != null && cqlQuery.startsWith("id==")) {
+        handleIdListQuery(context, itemMap, "items");
+      } else if (query != null) {
+        List<String> barcodes = parseBarcodes(query);
+        logger.info("Searching for barcodes {}", barcodes);
         JsonArray matchingItems = new JsonArray();
         for(JsonObject json : itemMap.values()) {
-          if(json.containsKey("barcode") && json.getString("barcode").equals(barcode)) {
+          if(json.containsKey("barcode") && barcodes.contains(json.getString("barcode"))) {
             matchingItems.add(json);
           }
         }
@@ -264,23 +276,42 @@ public class OkapiMock extends AbstractVerticle {
     }
   }
 
-   private static String parseBarcode(String query) {
-     Pattern pattern = Pattern.compile("barcode==\"(\\d+)\"");
-     Matcher matcher = pattern.matcher(StringUtil.urlDecode(query));
-     if(matcher.find()) {
-       return matcher.group(1);
-     } else {
-       return null;
+   /* Barcodes of a barcode=="1" or barcode==("1" or "2") query */
+   private static List<String> parseBarcodes(String query) {
+     List<String> barcodes = new ArrayList<>();
+     Matcher matcher = Pattern.compile("\"(\\d+)\"").matcher(StringUtil.urlDecode(query));
+     while(matcher.find()) {
+       barcodes.add(matcher.group(1));
+     }
+     return barcodes;
+   }
+
+   /* Answer an id==(a or b or ...) query against the given record map */
+   private static void handleIdListQuery(RoutingContext context, Map<String, JsonObject> recordMap,
+       String collectionName) {
+     String query = context.request().getParam("query");
+     if(query == null || !query.startsWith("id==")) {
+       context.response().setStatusCode(400).end("Only id queries are supported");
+       return;
+     }
+     JsonArray matchingRecords = new JsonArray();
+     Matcher matcher = Pattern.compile("[0-9a-fA-F-]{36}").matcher(query);
+     while(matcher.find()) {
+       if(recordMap.containsKey(matcher.group())) {
+         matchingRecords.add(recordMap.get(matcher.group()));
+       }
      }
+     JsonObject result = new JsonObject()
+         .put(collectionName, matchingRecords)
+         .put("totalRecords", matchingRecords.size());
+     context.response().setStatusCode(200).end(result.encode());
    }
 
    private void handleHoldings(RoutingContext context) {
      String id = context.request().getParam("id");
      if(context.request().method() == HttpMethod.GET) {
         if(id == null) {
-          String message = String.format("List retrieval currently unsupported");
-          context.response().setStatusCode(400)
-          .end(message);
+          handleIdListQuery(context, holdingsMap, "holdingsRecords");
         } else {
           if(holdingsMap.containsKey(id)) {
             context.response().setStatusCode(200).end(holdingsMap.get(id).encode());
@@ -300,9 +331,7 @@ public class OkapiMock extends AbstractVerticle {
      String id = context.request().getParam("id");
      if(context.request().method() == HttpMethod.GET) {
         if(id == null) {
-          String message = String.format("List retrieval currently unsupported");
-          context.response().setStatusCode(400)
-          .end(message);
+          handleIdListQuery(context, instanceMap, "instances");
         } else {
           if(instanceMap.containsKey(id)) {
             context.response().setStatusCode(200).end(instanceMap.get(id).encode());
@@ -318,11 +347,50 @@ public class OkapiMock extends AbstractVerticle {
       }
    }
 
+   /* Answer items.id== and items.barcode== queries in the shape of the inventory view */
+   private void handleInventoryView(RoutingContext context) {
+     if(!inventoryViewAvailable) {
+       context.response().setStatusCode(404).end("No suitable module found for path");
+       return;
+     }
+     String query = context.request().getParam("query");
+     Matcher matcher = Pattern.compile("items\\.(id|barcode)==\"([^\"]*)\"")
+         .matcher(query == null ? "" : query);
+     if(!matcher.find()) {
+       context.response().setStatusCode(400)
+           .end("Only items.id and items.barcode queries are supported");
+       return;
+     }
+     String field = matcher.group(1);
+     String value = matcher.group(2);
+     JsonArray instances = new JsonArray();
+     for(JsonObject item : itemMap.values()) {
+       if(!value.equals(item.getString(field))) {
+         continue;
+       }
+       JsonObject holdings = holdingsMap.get(item.getString("holdingsRecordId"));
+       JsonObject instance = holdings == null ? null : instanceMap.get(holdings.getString("instanceId"));
+       if(instance != null) {
+         instances.add(new JsonObject()
+             .put("instanceId", instance.getString("id"))
+             .put("instance", instance)
+             .put("holdingsRecords", new JsonArray().add(holdings))
+             .put("items", new JsonArray().add(item)));
+       }
+     }
+     JsonObject result = new JsonObject()
+         .put("instances", instances)
+         .put("totalRecords", instances.size());
+     context.response().setStatusCode(200).end(result.encode());
+   }
+
    private void handleLocations(RoutingContext context) {
      logger.info("Got location request");
      String id = context.request().getParam("id");
      if(context.request().method() == HttpMethod.GET) {
-        if(id == null) {
+        if(id == null && context.request().query() != null) {
+          handleIdListQuery(context, locationMap, "locations");
+        } else if(id == null) {
           String message = String.format("List retrieval currently unsupported");
           context.response().setStatusCode(400)
           .end(message);
@@ -346,9 +414,7 @@ public class OkapiMock extends AbstractVerticle {
      String id = context.request().getParam("id");
      if(context.request().method() == HttpMethod.GET) {
         if(id == null) {
-          String message = String.format("List retrieval currently unsupported");
-          context.response().setStatusCode(400)
-          .end(message);
+          handleIdListQuery(context, servicePointMap, "servicepoints");
         } else {
           if(servicePointMap.containsKey(id)) {
             context.response().setStatusCode(200).end(servicePointMap.get(id).encode());
@@ -368,7 +434,9 @@ public class OkapiMock extends AbstractVerticle {
      logger.info("Got loan types request");
      String id = context.request().getParam("id");
      if(context.request().method() == HttpMethod.GET) {
-        if(id == null) {
+        if(id == null && context.request().query() != null) {
+          handleIdListQuery(context, loanTypeMap, "loantypes");
+        } else if(id == null) {
           String message = String.format("List retrieval currently unsupported");
           context.response().setStatusCode(400)
           .end(message);
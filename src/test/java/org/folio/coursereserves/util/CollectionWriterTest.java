@@ -0,0 +1,157 @@
+package org.folio.coursereserves.util;
+
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.RunTestOnContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowStream;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class CollectionWriterTest {
+
+  @Rule
+  public RunTestOnContext rule = new RunTestOnContext();
+
+  /* A RowStream that delivers the rows pushed with push() unless it is paused */
+  private static class FakeStream {
+    private Handler<Row> handler;
+    private Handler<Void> endHandler;
+    private boolean paused;
+
+    @SuppressWarnings("unchecked")
+    RowStream<Row> stream() {
+      return (RowStream<Row>) Proxy.newProxyInstance(RowStream.class.getClassLoader(),
+          new Class<?>[] {RowStream.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+              case "handler":
+                handler = (Handler<Row>) args[0];
+                return proxy;
+              case "endHandler":
+                endHandler = (Handler<Void>) args[0];
+                return proxy;
+              case "pause":
+                paused = true;
+                return proxy;
+              case "resume":
+                paused = false;
+                return proxy;
+              case "close":
+                return Future.succeededFuture();
+              default:
+                return proxy;
+            }
+          });
+    }
+
+    void push(int n) {
+      handler.handle(row(n));
+    }
+
+    void end() {
+      endHandler.handle(null);
+    }
+  }
+
+  private static Row row(int n) {
+    return (Row) Proxy.newProxyInstance(Row.class.getClassLoader(), new Class<?>[] {Row.class},
+        (proxy, method, args) -> {
+          if (method.getName().equals("getValue")) {
+            return "id" + n;
+          }
+          if (method.getName().equals("getString")) {
+            return new JsonObject().put("n", n).encode();
+          }
+          if (method.getName().equals("size")) {
+            return 2;
+          }
+          return null;
+        });
+  }
+
+  @Test
+  public void testRaw(TestContext context) {
+    FakeStream fake = new FakeStream();
+    CollectionWriter<Map> writer = new CollectionWriter<>("items", Map.class, null, 2);
+    writer.write(fake.stream()).onComplete(context.asyncAssertSuccess(x -> {
+      context.assertEquals("{\"items\":[{\"n\":0},{\"n\":1},{\"n\":2}],\"totalRecords\":3}",
+          writer.toJson(3, null, null));
+      context.assertEquals("id2", writer.getLastId());
+    }));
+    fake.push(0);
+    fake.push(1);
+    fake.push(2);
+    fake.end();
+  }
+
+  @Test
+  public void testChunkPausesStream(TestContext context) {
+    Async async = context.async();
+    FakeStream fake = new FakeStream();
+    List<Promise<List<Map>>> chunks = new ArrayList<>();
+    CollectionWriter<Map> writer = new CollectionWriter<>("items", Map.class, list -> {
+      Promise<List<Map>> promise = Promise.promise();
+      chunks.add(promise);
+      return promise.future().map(x -> list);
+    }, 2);
+    writer.write(fake.stream()).onComplete(context.asyncAssertSuccess(x -> {
+      context.assertEquals("{\"items\":[{\"n\":0},{\"n\":1},{\"n\":2}],"
+          + "\"totalRecords\":3,\"totalRecordsEstimated\":true,\"nextCursor\":\"c\"}",
+          writer.toJson(3, true, "c"));
+      context.assertEquals(3, writer.getCount());
+      async.complete();
+    }));
+    fake.push(0);
+    fake.push(1);
+    // a full chunk is expanding, so the stream waits
+    context.assertEquals(1, chunks.size());
+    context.assertTrue(fake.paused);
+    chunks.get(0).complete();
+    context.assertFalse(fake.paused);
+    fake.push(2);
+    fake.end();
+    context.assertEquals(2, chunks.size());
+    chunks.get(1).complete();
+  }
+
+  @Test
+  public void testExpanderFails(TestContext context) {
+    FakeStream fake = new FakeStream();
+    CollectionWriter<Map> writer = new CollectionWriter<>("items", Map.class,
+        list -> Future.failedFuture("lookup failed"), 2);
+    writer.write(fake.stream()).onComplete(context.asyncAssertFailure(e ->
+        context.assertEquals("lookup failed", e.getMessage())));
+    fake.push(0);
+    fake.push(1);
+  }
+
+  @Test
+  public void testWriteRows(TestContext context) {
+    List<Row> rows = new ArrayList<>();
+    for (int n = 0; n < 3; n++) {
+      rows.add(row(n));
+    }
+    List<Integer> chunks = new ArrayList<>();
+    CollectionWriter<Map> writer = new CollectionWriter<>("items", Map.class, list -> {
+      chunks.add(list.size());
+      return Future.succeededFuture(list);
+    }, 2);
+    writer.writeRows(rows).onComplete(context.asyncAssertSuccess(x -> {
+      context.assertEquals("{\"items\":[{\"n\":0},{\"n\":1},{\"n\":2}],\"totalRecords\":3,"
+          + "\"totalRecordsEstimated\":false}", writer.toJson(3, false, null));
+      context.assertEquals(List.of(2, 1), chunks);
+      context.assertEquals("id2", writer.getLastId());
+    }));
+  }
+}
@@ -0,0 +1,116 @@
+package org.folio.coursereserves.util;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.RunTestOnContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class FanOutTest {
+
+  @Rule
+  public RunTestOnContext rule = new RunTestOnContext();
+
+  @Test
+  public void testOrderedResultsWithBoundedParallelism(TestContext context) {
+    Async async = context.async();
+    List<Promise<String>> promises = new ArrayList<>();
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+    List<Integer> inputs = Arrays.asList(0, 1, 2, 3, 4, 5);
+    FanOut.map(inputs, i -> {
+      maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+      Promise<String> promise = Promise.promise();
+      promises.add(promise);
+      return promise.future().onComplete(x -> running.decrementAndGet());
+    }, 2, new FanOut.Permits(10)).onComplete(context.asyncAssertSuccess(list -> {
+      context.assertEquals(Arrays.asList("r0", "r1", "r2", "r3", "r4", "r5"), list);
+      context.assertEquals(2, maxRunning.get());
+      async.complete();
+    }));
+    context.assertEquals(2, promises.size());
+    // complete out of order; results must still follow the input order
+    promises.get(1).complete("r1");
+    promises.get(0).complete("r0");
+    promises.get(3).complete("r3");
+    promises.get(2).complete("r2");
+    promises.get(5).complete("r5");
+    promises.get(4).complete("r4");
+  }
+
+  @Test
+  public void testFailFast(TestContext context) {
+    AtomicInteger started = new AtomicInteger();
+    FanOut.map(Arrays.asList(1, 2, 3, 4), i -> {
+      started.incrementAndGet();
+      if (i == 2) {
+        return Future.failedFuture("lookup " + i + " failed");
+      }
+      return Future.succeededFuture(i);
+    }, 1, new FanOut.Permits(10)).onComplete(context.asyncAssertFailure(e -> {
+      context.assertEquals("lookup 2 failed", e.getMessage());
+      context.assertEquals(2, started.get());
+    }));
+  }
+
+  @Test
+  public void testSharedPermits(TestContext context) {
+    FanOut.Permits permits = new FanOut.Permits(1);
+    List<Promise<Integer>> promises = new ArrayList<>();
+    Future<List<Integer>> first = FanOut.map(Arrays.asList(1, 2), i -> {
+      if (i == 2) {
+        return Future.succeededFuture(i);
+      }
+      Promise<Integer> promise = Promise.promise();
+      promises.add(promise);
+      return promise.future();
+    }, 5, permits);
+    Future<List<Integer>> second = FanOut.map(Arrays.asList(3), i -> Future.succeededFuture(i),
+        5, permits);
+    context.assertEquals(1, promises.size());
+    context.assertFalse(second.isComplete());
+    promises.get(0).complete(1);
+    first.onComplete(context.asyncAssertSuccess(list ->
+        context.assertEquals(Arrays.asList(1, 2), list)));
+    second.onComplete(context.asyncAssertSuccess(list ->
+        context.assertEquals(Arrays.asList(3), list)));
+  }
+
+  @Test
+  public void testEmpty(TestContext context) {
+    FanOut.map(new ArrayList<Integer>(), i -> Future.succeededFuture(i), 1, new FanOut.Permits(1))
+        .onComplete(context.asyncAssertSuccess(list -> context.assertTrue(list.isEmpty())));
+  }
+
+  @Test
+  public void testTenantPermitsDropped(TestContext context) {
+    Map<String, String> headers = Map.of(CRUtil.OKAPI_TENANT_HEADER, "fanout_tenant");
+    int tenants = FanOut.tenantCount();
+    List<Promise<Integer>> promises = new ArrayList<>();
+    Future<List<Integer>> first = FanOut.map(Arrays.asList(1, 2), i -> {
+      Promise<Integer> promise = Promise.promise();
+      promises.add(promise);
+      return promise.future();
+    }, headers);
+    Future<List<Integer>> second = FanOut.map(Arrays.asList(3), i -> Future.succeededFuture(i),
+        headers);
+    context.assertTrue(second.succeeded());
+    // the first call still has tasks running, so its tenant keeps its permits
+    context.assertEquals(tenants + 1, FanOut.tenantCount());
+    promises.get(0).fail("lookup failed");
+    context.assertTrue(first.failed());
+    context.assertEquals(tenants + 1, FanOut.tenantCount());
+    promises.get(1).complete(2);
+    context.assertEquals(tenants, FanOut.tenantCount());
+  }
+}
@@ -0,0 +1,42 @@
+package org.folio.coursereserves.util;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.pgclient.PgConnectOptions;
+import io.vertx.pgclient.SslMode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.Test;
+
+public class InvalidationBusTest {
+
+  private static JsonObject config() {
+    return new JsonObject()
+        .put("host", "db.example.org")
+        .put("port", 5433)
+        .put("username", "folio")
+        .put("password", "secret")
+        .put("database", "okapi_modules");
+  }
+
+  @Test
+  public void testConnectOptions() {
+    PgConnectOptions options = InvalidationBus.connectOptions(config());
+    assertEquals("db.example.org", options.getHost());
+    assertEquals(5433, options.getPort());
+    assertEquals("folio", options.getUser());
+    assertEquals("secret", options.getPassword());
+    assertEquals("okapi_modules", options.getDatabase());
+    assertEquals(SslMode.DISABLE, options.getSslMode());
+    assertNull(options.getPemTrustOptions());
+  }
+
+  @Test
+  public void testConnectOptionsServerPem() {
+    String pem = "-----BEGIN CERTIFICATE-----\nMIIB\n-----END CERTIFICATE-----\n";
+    PgConnectOptions options = InvalidationBus.connectOptions(config().put("server_pem", pem));
+    assertEquals(SslMode.VERIFY_FULL, options.getSslMode());
+    assertEquals("HTTPS", options.getHostnameVerificationAlgorithm());
+    assertEquals(pem, options.getPemTrustOptions().getCertValues().get(0).toString());
+  }
+}
@@ -0,0 +1,99 @@
+package org.folio.coursereserves.util;
+
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.Test;
+
+public class PageCursorTest {
+
+  @Test
+  public void testRoundTrip() {
+    String id = UUID.randomUUID().toString();
+    assertEquals(id, PageCursor.decode(PageCursor.encode(id)));
+  }
+
+  @Test
+  public void testStart() {
+    assertNull(PageCursor.decode(PageCursor.START));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNotBase64() {
+    PageCursor.decode("not a cursor");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNotId() {
+    PageCursor.decode(PageCursor.encode("1 OR 1=1"));
+  }
+
+  @Test
+  public void testKeyRoundTrip() {
+    String id = UUID.randomUUID().toString();
+    PageCursor.Position position = PageCursor.decodePosition(PageCursor.encode("qa76.73 j38: o'neil", id));
+    assertEquals(id, position.getId());
+    assertEquals("qa76.73 j38: o'neil", position.getKey());
+    assertEquals(id, PageCursor.decode(PageCursor.encode("a", id)));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testKeyNotId() {
+    PageCursor.decodePosition(PageCursor.encode("a", "1 OR 1=1"));
+  }
+
+  @Test
+  public void testPageById() throws Exception {
+    String id = UUID.randomUUID().toString();
+    PageCursor.Page page = PageCursor.page("s", "t", null, PageCursor.encode(id));
+    assertEquals(" FROM s.t WHERE true", page.getFromWhere());
+    assertEquals(" AND id > $1", page.getAfter());
+    assertEquals(UUID.fromString(id), page.getParams().getValue(0));
+    assertEquals("", page.getKeyColumn());
+    assertEquals(" ORDER BY id", page.getOrderBy());
+  }
+
+  @Test
+  public void testPageBySortKey() throws Exception {
+    String id = UUID.randomUUID().toString();
+    String key = "coalesce(lower(f_unaccent(coursereserves_reserves.jsonb"
+        + " #>> '{copiedItem,title}')), '')";
+    PageCursor.Page page = PageCursor.page("s", "coursereserves_reserves",
+        "cql.allRecords=1 sortby copiedItem.title/sort.descending",
+        PageCursor.encode("it's", id));
+    assertEquals(" AND (" + key + ", id) < ($1, $2)", page.getAfter());
+    assertEquals("it's", page.getParams().getValue(0));
+    assertEquals(UUID.fromString(id), page.getParams().getValue(1));
+    assertEquals(", " + key, page.getKeyColumn());
+    assertEquals(" ORDER BY " + key + " DESC, id DESC", page.getOrderBy());
+  }
+
+  @Test
+  public void testPageStartSorted() throws Exception {
+    PageCursor.Page page = PageCursor.page("s", "t", "cql.allRecords=1 sortby id",
+        PageCursor.START);
+    assertEquals("", page.getAfter());
+    assertEquals(0, page.getParams().size());
+    assertEquals("", page.getKeyColumn());
+    assertEquals(" ORDER BY id", page.getOrderBy());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testPageCursorOfOtherSort() throws Exception {
+    PageCursor.page("s", "coursereserves_reserves", "cql.allRecords=1 sortby copiedItem.title",
+        PageCursor.encode(UUID.randomUUID().toString()));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testPageSortFieldWithoutIndex() throws Exception {
+    PageCursor.page("s", "coursereserves_reserves", "cql.allRecords=1 sortby copiedItem.barcode",
+        PageCursor.START);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testPageTwoSortKeys() throws Exception {
+    PageCursor.page("s", "coursereserves_reserves", "cql.allRecords=1 sortby copiedItem.title id",
+        PageCursor.START);
+  }
+}
@@ -0,0 +1,93 @@
+package org.folio.coursereserves.util;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+public class ReferenceDataCacheTest {
+
+  private static final String TABLE = "coursereserves_terms";
+
+  @Test
+  public void testLoadOnce() {
+    ReferenceDataCache cache = new ReferenceDataCache(10, 60000);
+    AtomicInteger loads = new AtomicInteger();
+    for (int i = 0; i < 3; i++) {
+      String value = cache.get("diku", TABLE, "1", String.class, () -> {
+        loads.incrementAndGet();
+        return Future.succeededFuture("one");
+      }).result();
+      assertEquals("one", value);
+    }
+    assertEquals(1, loads.get());
+    assertEquals(2, cache.getCache().getHits());
+  }
+
+  @Test
+  public void testInvalidate() {
+    ReferenceDataCache cache = new ReferenceDataCache(10, 60000);
+    cache.get("diku", TABLE, "1", String.class, () -> Future.succeededFuture("one"));
+    cache.get("other", TABLE, "1", String.class, () -> Future.succeededFuture("one"));
+    cache.get("diku", "coursereserves_departments", "1", String.class,
+        () -> Future.succeededFuture("one"));
+    cache.invalidate("diku", TABLE);
+    assertEquals(2, cache.getCache().size());
+    assertEquals("uno", cache.get("diku", TABLE, "1", String.class,
+        () -> Future.succeededFuture("uno")).result());
+    cache.invalidateTenant("diku");
+    assertEquals(1, cache.getCache().size());
+  }
+
+  @Test
+  public void testInvalidateRecord() {
+    ReferenceDataCache cache = new ReferenceDataCache(10, 60000);
+    cache.get("diku", TABLE, "1", String.class, () -> Future.succeededFuture("one"));
+    cache.get("diku", TABLE, "2", String.class, () -> Future.succeededFuture("two"));
+    cache.invalidate("diku", TABLE, "1");
+    assertEquals(1, cache.getCache().size());
+    cache.invalidateAll();
+    assertEquals(0, cache.getCache().size());
+  }
+
+  @Test
+  public void testLoadRacingWithInvalidate() {
+    ReferenceDataCache cache = new ReferenceDataCache(10, 60000);
+    Promise<String> promise = Promise.promise();
+    cache.get("diku", TABLE, "1", String.class, promise::future);
+    cache.invalidate("diku", TABLE);
+    promise.complete("stale");
+    assertEquals(0, cache.getCache().size());
+
+    Promise<String> tenantPromise = Promise.promise();
+    cache.get("diku", TABLE, "1", String.class, tenantPromise::future);
+    cache.invalidateTenant("diku");
+    tenantPromise.complete("stale");
+    assertEquals(0, cache.getCache().size());
+  }
+
+  @Test
+  public void testGetAllLoadsMissing() {
+    ReferenceDataCache cache = new ReferenceDataCache(10, 60000);
+    cache.get("diku", TABLE, "1", String.class, () -> Future.succeededFuture("one"));
+    List<String> requested = new ArrayList<>();
+    Map<String, String> result = cache.getAll("diku", TABLE, List.of("1", "2", "3"),
+        String.class, ids -> {
+          requested.addAll(ids);
+          Map<String, String> loaded = new HashMap<>();
+          loaded.put("2", "two");
+          return Future.succeededFuture(loaded);
+        }).result();
+    assertEquals(List.of("2", "3"), requested);
+    assertEquals(2, result.size());
+    assertEquals("one", result.get("1"));
+    assertEquals("two", result.get("2"));
+    assertEquals(2, cache.getCache().size());
+  }
+}
@@ -0,0 +1,46 @@
+package org.folio.coursereserves.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.Test;
+
+public class ShelvingOrderTest {
+
+  private static void assertShelfOrder(String... callNumbers) {
+    List<String> keys = new ArrayList<>();
+    for (String callNumber : callNumbers) {
+      keys.add(ShelvingOrder.key(null, callNumber, null));
+    }
+    List<String> sorted = new ArrayList<>(keys);
+    Collections.sort(sorted);
+    assertEquals(keys, sorted);
+  }
+
+  @Test
+  public void testLibraryOfCongress() {
+    assertShelfOrder("Q76 .A1", "QA9 .B2", "QA76 .J38", "QA76.73 .J38", "QA76.9 .A1", "QA767 .C3",
+        "QB1 .A2");
+    assertEquals("QA 00076.73 J38 2010", ShelvingOrder.key(null, "qa76.73.j38  2010", null));
+  }
+
+  @Test
+  public void testDewey() {
+    assertShelfOrder("5 ABC", "81.2 SMI", "599.9 SMI", "599.95 JON", "600 ABC");
+  }
+
+  @Test
+  public void testSuffixAndPrefix() {
+    assertEquals("QA 00076.0 V.2 REF", ShelvingOrder.key(" ref ", "QA76", "v.2"));
+  }
+
+  @Test
+  public void testNoNumber() {
+    assertNull(ShelvingOrder.key("REF", null, "v.2"));
+    assertNull(ShelvingOrder.key("REF", " ", null));
+    assertEquals("MICROFILM 12", ShelvingOrder.key(null, "Microfilm 12", null));
+  }
+}
@@ -0,0 +1,60 @@
+package org.folio.coursereserves.util;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class SingleFlightTest {
+
+  @Test
+  public void testCoalesce() {
+    SingleFlight<String, String> singleFlight = new SingleFlight<>();
+    AtomicInteger calls = new AtomicInteger();
+    Promise<String> promise = Promise.promise();
+    Future<String> first = singleFlight.execute("a", () -> {
+      calls.incrementAndGet();
+      return promise.future();
+    });
+    Future<String> second = singleFlight.execute("a", () -> {
+      calls.incrementAndGet();
+      return Future.succeededFuture("other");
+    });
+    Future<String> third = singleFlight.execute("b", () -> {
+      calls.incrementAndGet();
+      return Future.succeededFuture("beta");
+    });
+    assertEquals(2, calls.get());
+    assertEquals(1, singleFlight.inFlightCount());
+    promise.complete("alpha");
+    assertEquals("alpha", first.result());
+    assertEquals("alpha", second.result());
+    assertEquals("beta", third.result());
+    assertEquals(1, singleFlight.getCoalescedCount());
+    assertEquals(0, singleFlight.inFlightCount());
+  }
+
+  @Test
+  public void testNotReusedAfterCompletion() {
+    SingleFlight<String, String> singleFlight = new SingleFlight<>();
+    AtomicInteger calls = new AtomicInteger();
+    singleFlight.execute("a", () -> Future.succeededFuture("alpha" + calls.incrementAndGet()));
+    Future<String> second = singleFlight.execute("a",
+        () -> Future.succeededFuture("alpha" + calls.incrementAndGet()));
+    assertEquals("alpha2", second.result());
+  }
+
+  @Test
+  public void testFailure() {
+    SingleFlight<String, String> singleFlight = new SingleFlight<>();
+    Future<String> failed = singleFlight.execute("a", () -> {
+      throw new IllegalStateException("boom");
+    });
+    assertTrue(failed.failed());
+    assertEquals("boom", failed.cause().getMessage());
+    assertEquals(0, singleFlight.inFlightCount());
+  }
+}
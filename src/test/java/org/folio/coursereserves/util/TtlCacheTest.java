@@ -0,0 +1,72 @@
+package org.folio.coursereserves.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class TtlCacheTest {
+
+  @Test
+  public void testHitAndMiss() {
+    TtlCache<String, String> cache = new TtlCache<>(10, 1000);
+    assertNull(cache.get("a"));
+    cache.put("a", "alpha");
+    assertEquals("alpha", cache.get("a"));
+    assertEquals(1, cache.getHits());
+    assertEquals(1, cache.getMisses());
+  }
+
+  @Test
+  public void testExpiry() {
+    AtomicLong now = new AtomicLong(0);
+    TtlCache<String, String> cache = new TtlCache<>(10, 1000, now::get);
+    cache.put("a", "alpha");
+    now.set(999);
+    assertEquals("alpha", cache.get("a"));
+    now.set(1000);
+    assertNull(cache.get("a"));
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testLeastRecentlyUsedEviction() {
+    TtlCache<String, String> cache = new TtlCache<>(2, 1000);
+    cache.put("a", "alpha");
+    cache.put("b", "beta");
+    cache.get("a");
+    cache.put("c", "gamma");
+    assertEquals(2, cache.size());
+    assertEquals(1, cache.getEvictions());
+    assertEquals("alpha", cache.get("a"));
+    assertNull(cache.get("b"));
+    assertEquals("gamma", cache.get("c"));
+  }
+
+  @Test
+  public void testInvalidate() {
+    TtlCache<String, String> cache = new TtlCache<>(10, 1000);
+    cache.put("t1|a", "alpha");
+    cache.put("t1|b", "beta");
+    cache.put("t2|a", "alpha");
+    cache.invalidate("t1|b");
+    assertNull(cache.get("t1|b"));
+    cache.invalidateIf(key -> key.startsWith("t1|"));
+    assertNull(cache.get("t1|a"));
+    assertEquals("alpha", cache.get("t2|a"));
+    cache.clear();
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testDisabled() {
+    TtlCache<String, String> cache = new TtlCache<>(0, 1000);
+    assertFalse(cache.isEnabled());
+    cache.put("a", "alpha");
+    assertNull(cache.get("a"));
+    assertTrue(new TtlCache<String, String>(1, 1).isEnabled());
+  }
+}
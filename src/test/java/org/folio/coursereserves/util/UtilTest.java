@@ -2,7 +2,9 @@ package org.folio.coursereserves.util;
 
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.ArrayList;
 
@@ -15,6 +17,8 @@ import org.folio.rest.jaxrs.model.TemporaryLocationObject;
 import org.folio.rest.jaxrs.model.Reserve;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNull;
 import org.junit.Test;
 
@@ -48,6 +52,26 @@ public class UtilTest {
     assertTrue(locationObject.getServicePointIds().size() == 3);
   }
 
+  @Test
+  public void testPojoMapper() {
+    PojoMapper<TemporaryLocationObject> mapper = PojoMapper.of(TemporaryLocationObject.class,
+        TemporaryLocationObject::new, CRUtil.getLocationMapList());
+    String id = UUID.randomUUID().toString();
+    JsonObject json = new JsonObject()
+        .put("id", id)
+        .put("name", "Reserve Room")
+        .put("isActive", Boolean.FALSE)
+        .put("servicePointIds", new JsonArray().add(UUID.randomUUID().toString()));
+    TemporaryLocationObject locationObject = mapper.fromJson(json);
+    assertTrue(locationObject.getId().equals(id));
+    assertTrue(locationObject.getName().equals("Reserve Room"));
+    assertFalse(locationObject.getIsActive());
+    assertTrue(locationObject.getServicePointIds().size() == 1);
+    assertNull(locationObject.getCode());
+    assertNull(mapper.fromJson(null));
+    assertNull(mapper.fromJson(new JsonObject().put("isActive", "yes")));
+  }
+
   @Test
   public void testCopyFields() {
     TemporaryLocationObject tempLocationObject = new TemporaryLocationObject();
@@ -61,6 +85,20 @@ public class UtilTest {
     assertTrue(tempLocationObject.getIsActive().equals(locationObject.getIsActive()));
   }
 
+  @Test
+  public void testCopyPlanIsReused() {
+    CopyPlan plan = CopyPlan.of(TemporaryLocationObject.class, LocationObject.class);
+    assertTrue(plan == CopyPlan.of(TemporaryLocationObject.class, LocationObject.class));
+    assertTrue(plan.size() > 0);
+    LocationObject locationObject = new LocationObject();
+    locationObject.setName("Small Library");
+    TemporaryLocationObject tempLocationObject = new TemporaryLocationObject();
+    tempLocationObject.setId(UUID.randomUUID().toString());
+    plan.copy(tempLocationObject, locationObject);
+    assertTrue(tempLocationObject.getName().equals("Small Library"));
+    assertNull(tempLocationObject.getId());
+  }
+
   @Test
   public void testNullCopyFields() {
     TemporaryLocationObject tempLocationObject = new TemporaryLocationObject();
@@ -104,6 +142,24 @@ public class UtilTest {
     assertNull(callNumberBad);
   }
 
+  @Test public void testShelvingOrderKey() {
+    JsonObject holdings = new JsonObject().put("callNumberPrefix", "REF")
+        .put("callNumber", "QA76 .K56");
+    assertEquals(ShelvingOrder.key("REF", "QA76 .K56", null),
+        CRUtil.shelvingOrderKey(new JsonObject(), holdings));
+    JsonObject item = new JsonObject().put("itemLevelCallNumber", "F 99.99")
+        .put("itemLevelCallNumberSuffix", "COW");
+    assertEquals(ShelvingOrder.key(null, "F 99.99", "COW"), CRUtil.shelvingOrderKey(item, holdings));
+  }
+
+
+  @Test public void testSortByShelvingOrder() {
+    assertNull(Util.sortByShelvingOrder(null));
+    assertEquals("copiedItem.callNumber=QA*",
+        Util.sortByShelvingOrder("copiedItem.callNumber=QA*"));
+    assertEquals("copiedItem.callNumber=QA* sortby copiedItem.shelvingOrder/sort.descending title",
+        Util.sortByShelvingOrder("copiedItem.callNumber=QA* sortby copiedItem.callNumber/sort.descending title"));
+  }
 
   @Test public void testExpandLocaldate() {
     String localDate = "2001-01-01";
@@ -147,6 +203,75 @@ public class UtilTest {
     assertEquals("2", reserve.getCopiedItem().getCopy());
   }
 
+  @Test
+  public void testMakeIdListQuery() {
+    List<String> ids = new ArrayList<>();
+    ids.add("a");
+    ids.add("b");
+    assertEquals("id==(\"a\" or \"b\")", CRUtil.makeIdListQuery(ids));
+  }
+
+  @Test
+  public void testInventoryCacheKey() {
+    Map<String, String> headers = new HashMap<>();
+    assertNull(CRUtil.inventoryCacheKey(headers, "/locations/1"));
+    headers.put("X-Okapi-Tenant", "diku");
+    headers.put("X-Okapi-Url", "http://localhost:9130");
+    String dikuKey = CRUtil.inventoryCacheKey(headers, "/locations/1");
+    headers.put("X-Okapi-Tenant", "other");
+    assertNotEquals(dikuKey, CRUtil.inventoryCacheKey(headers, "/locations/1"));
+    assertFalse(CRUtil.bypassInventoryCache(headers));
+    headers.put("Cache-Control", "no-cache");
+    assertTrue(CRUtil.bypassInventoryCache(headers));
+  }
+
+  @Test
+  public void testGetHeader() {
+    Map<String, String> headers = new HashMap<>();
+    headers.put("X-Okapi-Tenant", "diku");
+    assertEquals("diku", OkapiClient.getHeader(headers, "x-okapi-tenant"));
+    assertEquals("diku", OkapiClient.getHeader(headers, "X-Okapi-Tenant"));
+    assertNull(OkapiClient.getHeader(headers, "x-okapi-token"));
+  }
+
+  @Test
+  public void testHierarchyFromInventoryView() {
+    JsonObject item = new JsonObject().put("id", "i1").put("holdingsRecordId", "h1");
+    JsonObject view = new JsonObject()
+        .put("instance", new JsonObject().put("id", "in1"))
+        .put("holdingsRecords", new JsonArray()
+            .add(new JsonObject().put("id", "h1"))
+            .add(new JsonObject().put("id", "h2")))
+        .put("items", new JsonArray().add(item)
+            .add(new JsonObject().put("id", "i2").put("holdingsRecordId", "h2")));
+    JsonObject viewJson = new JsonObject().put("instances", new JsonArray().add(view));
+    JsonObject result = CRUtil.hierarchyFromInventoryView(viewJson,
+        json -> "i1".equals(json.getString("id")));
+    assertEquals("i1", result.getJsonObject("item").getString("id"));
+    assertEquals("h1", result.getJsonObject("holdings").getString("id"));
+    assertEquals("in1", result.getJsonObject("instance").getString("id"));
+    assertNull(CRUtil.hierarchyFromInventoryView(viewJson, json -> true));
+    assertNull(CRUtil.hierarchyFromInventoryView(viewJson,
+        json -> "i3".equals(json.getString("id"))));
+    viewJson.getJsonArray("instances").add(view.copy());
+    assertNull(CRUtil.hierarchyFromInventoryView(viewJson,
+        json -> "i1".equals(json.getString("id"))));
+    assertNull(CRUtil.hierarchyFromInventoryView(null, json -> true));
+  }
+
+  @Test
+  public void testPartition() {
+    List<Integer> list = new ArrayList<>();
+    for (int i = 0; i < 7; i++) {
+      list.add(i);
+    }
+    List<List<Integer>> partitionList = CRUtil.partition(list, 3);
+    assertEquals(3, partitionList.size());
+    assertEquals(3, partitionList.get(1).size());
+    assertEquals(1, partitionList.get(2).size());
+    assertEquals(Integer.valueOf(6), partitionList.get(2).get(0));
+  }
+
   @Test
   public void getQueryWithLimit() {
     assertEquals("courseListingId == \"l\"", Util.queryCourseListing(null, "l"));
@@ -1,6 +1,7 @@
 package org.folio.rest.impl;
 
 import static org.junit.Assert.assertFalse;
+import org.folio.cql2pgjson.exception.QueryValidationException;
 import org.junit.Test;
 
 import static org.junit.Assert.assertTrue;
@@ -22,6 +23,15 @@ public class CourseAPITest {
     assertTrue(CourseAPI.isDuplicate(message));
   }
 
+  @Test
+  public void testIsDuplicateReserve() {
+    assertTrue(CourseAPI.isDuplicateReserve("duplicate key value violates unique constraint "
+        + "\"coursereserves_reserves_courselistingid_itemid_idx_unique\""));
+    assertFalse(CourseAPI.isDuplicateReserve("duplicate key value violates unique constraint "
+        + "\"coursereserves_reserves_pkey\""));
+    assertFalse(CourseAPI.isDuplicateReserve(null));
+  }
+
   @Test
   public void testGetErrorResponse() {
     String error = "The googleflarble blipped";
@@ -33,6 +43,7 @@ public class CourseAPITest {
   public void testIsCQLError() {
     Exception e = new Exception("Whatever");
     assertFalse(CourseAPI.isCQLError(e));
+    assertTrue(CourseAPI.isCQLError(new RuntimeException(new QueryValidationException("bad"))));
   }
 
 